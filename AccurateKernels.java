@@ -0,0 +1,160 @@
+package org.geogebra.common.kernel.matrix;
+
+/**
+ * Compensated versions of dot products, cross products and square norms:
+ * rounding errors of products (exact, via Veltkamp splitting) and sums are
+ * accumulated and added back, so results are nearly as accurate as if
+ * computed with twice the precision (Ogita, Rump, Oishi "Dot2").
+ *
+ * Used by {@link Coords} when {@link Coords#setAccurateKernels(boolean)} is
+ * set.
+ */
+public final class AccurateKernels {
+
+	/** 2^27 + 1, to split a double in two 26-bit halves */
+	private static final double SPLITTER = 134217729.0;
+
+	private AccurateKernels() {
+		// utility class
+	}
+
+	/**
+	 * @param a
+	 *            factor
+	 * @param b
+	 *            factor
+	 * @param p
+	 *            a * b (rounded)
+	 * @return exact a * b - p (0 if it can't be computed because of
+	 *         overflow)
+	 */
+	public static double productError(double a, double b, double p) {
+		double t = SPLITTER * a;
+		double ah = t - (t - a);
+		double al = a - ah;
+		t = SPLITTER * b;
+		double bh = t - (t - b);
+		double bl = b - bh;
+		double e = ((ah * bh - p) + ah * bl + al * bh) + al * bl;
+		// e - e is NaN if e is infinite or NaN
+		return e - e == 0 ? e : 0;
+	}
+
+	/**
+	 * @param a
+	 *            term
+	 * @param b
+	 *            term
+	 * @param s
+	 *            a + b (rounded)
+	 * @return exact a + b - s
+	 */
+	public static double sumError(double a, double b, double s) {
+		double bb = s - a;
+		double e = (a - (s - bb)) + (b - bb);
+		return e - e == 0 ? e : 0;
+	}
+
+	/**
+	 * @param a
+	 *            a
+	 * @param b
+	 *            b
+	 * @param c
+	 *            c
+	 * @param d
+	 *            d
+	 * @return a * b - c * d
+	 */
+	public static double diffOfProducts(double a, double b, double c,
+			double d) {
+		double p = a * b;
+		double q = -c * d;
+		double s = p + q;
+		return s + (sumError(p, q, s) + productError(a, b, p)
+				+ productError(-c, d, q));
+	}
+
+	/**
+	 * @param a0
+	 *            first vector x
+	 * @param a1
+	 *            first vector y
+	 * @param a2
+	 *            first vector z
+	 * @param b0
+	 *            second vector x
+	 * @param b1
+	 *            second vector y
+	 * @param b2
+	 *            second vector z
+	 * @return a0 * b0 + a1 * b1 + a2 * b2
+	 */
+	public static double dotproduct3(double a0, double a1, double a2,
+			double b0, double b1, double b2) {
+		double p = a0 * b0;
+		double err = productError(a0, b0, p);
+		double h = a1 * b1;
+		double s = p + h;
+		err += productError(a1, b1, h) + sumError(p, h, s);
+		h = a2 * b2;
+		p = s + h;
+		err += productError(a2, b2, h) + sumError(s, h, p);
+		return p + err;
+	}
+
+	/**
+	 * @param v
+	 *            values
+	 * @param length
+	 *            number of values used
+	 * @return v[0]^2 + ... + v[length-1]^2
+	 */
+	public static double squareNorm(double[] v, int length) {
+		double s = 0;
+		double err = 0;
+		for (int i = 0; i < length; i++) {
+			double h = v[i] * v[i];
+			double t = s + h;
+			err += productError(v[i], v[i], h) + sumError(s, h, t);
+			s = t;
+		}
+		return s + err;
+	}
+
+	/**
+	 * set ret x, y, z to a ^ b cross product (each coord is nearly correctly
+	 * rounded)
+	 *
+	 * @param a
+	 *            first vector (x, y, z)
+	 * @param b
+	 *            second vector (x, y, z)
+	 * @param ret
+	 *            output (may be a or b)
+	 */
+	public static void crossProduct3(double[] a, double[] b, double[] ret) {
+		double a0 = a[0], a1 = a[1], a2 = a[2];
+		double b0 = b[0], b1 = b[1], b2 = b[2];
+		ret[0] = diffOfProducts(a1, b2, a2, b1);
+		ret[1] = diffOfProducts(a2, b0, a0, b2);
+		ret[2] = diffOfProducts(a0, b1, a1, b0);
+	}
+
+	/**
+	 * @param w
+	 *            vector (x, y, z)
+	 * @param a
+	 *            first vector (x, y, z)
+	 * @param b
+	 *            second vector (x, y, z)
+	 * @return w . (a ^ b)
+	 */
+	public static double dotCrossProduct(double[] w, double[] a,
+			double[] b) {
+		double a0 = a[0], a1 = a[1], a2 = a[2];
+		double b0 = b[0], b1 = b[1], b2 = b[2];
+		return dotproduct3(w[0], w[1], w[2], diffOfProducts(a1, b2, a2, b1),
+				diffOfProducts(a2, b0, a0, b2), diffOfProducts(a0, b1, a1, b0));
+	}
+}
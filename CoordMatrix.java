@@ -484,6 +484,21 @@ public class CoordMatrix {
 		return columns;
 	}
 
+	/**
+	 * Each change of a column value increases this stamp, so that callers can
+	 * check if the matrix has changed since last time they used it (compare
+	 * stamps with == only, they may overflow).
+	 * 
+	 * @return modification stamp (sum of columns stamps)
+	 */
+	public int getModificationStamp() {
+		int ret = 0;
+		for (int i = 0; i < columns; i++) {
+			ret += vectors[i].getModificationStamp();
+		}
+		return ret;
+	}
+
 	/**
 	 * returns a copy of the matrix
 	 * 
@@ -587,6 +602,30 @@ public class CoordMatrix {
         return s.toString();
     }
 
+	/**
+	 * append fixed-point representation (one line per row), without
+	 * allocation (see {@link DecimalAppender})
+	 *
+	 * @param s
+	 *            output
+	 * @param digits
+	 *            max digits of integer parts
+	 * @param precision
+	 *            decimal precision
+	 * @return s
+	 */
+	public StringBuilder appendTo(StringBuilder s, int digits, int precision) {
+		for (int i = 0; i < rows; i++) {
+			for (int j = 0; j < columns; j++) {
+				s.append("  ");
+				DecimalAppender.append(s, vectors[j].val[i], digits,
+						precision);
+			}
+			s.append('\n');
+		}
+		return s;
+	}
+
 	/**
 	 * returns false if one value equals NaN
 	 * 
@@ -971,6 +1010,11 @@ public class CoordMatrix {
 	}
 
 	/**
+	 * Solve columns * sol = res. Thread-safe as long as matrixForSolve and sol
+	 * are not shared between threads (all pivot state is local to the call).
+	 * Well-conditioned 3x3 and 4x4 systems are solved in closed form (then
+	 * matrixForSolve is not used).
+	 * 
 	 * @param matrixForSolve
 	 *            matrix used for solving
 	 * @param sol
@@ -980,12 +1024,16 @@ public class CoordMatrix {
 	 * @param columns
 	 *            matrix columns
 	 */
-	static synchronized final public void solve(double[][] matrixForSolve,
+	static final public void solve(double[][] matrixForSolve,
 			double[] sol, Coords res,
 			Coords... columns) {
 
 		int size = res.getLength();
 
+		if (SmallSystemSolver.solve(columns, res.val, sol, size)) {
+			return;
+		}
+
 		for (int i = 0; i < size; i++) {
 			columns[i].copy(matrixForSolve[i]);
 		}
@@ -1329,7 +1377,7 @@ public class CoordMatrix {
 
 	/**
 	 * makes Gauss pivot about this matrix and compute sol so that this * sol =
-	 * ret
+	 * ret (well-conditioned 3x3 and 4x4 matrices are solved in closed form)
 	 * 
 	 * @param sol
 	 *            solution
@@ -1337,6 +1385,12 @@ public class CoordMatrix {
 	 *            result
 	 */
 	public void pivot(Coords sol, Coords res) {
+		sol.markModified();
+		if (rows == columns && res.getLength() >= rows
+				&& SmallSystemSolver.solve(vectors, res.val, sol.val, rows)) {
+			return;
+		}
+
 		updatePivotMatrix();
 
 		if (pivotSolRes == null) {
@@ -1362,6 +1416,7 @@ public class CoordMatrix {
 	 *            result
 	 */
 	public void pivotDegenerate(Coords sol, Coords res) {
+		sol.markModified();
 		updatePivotMatrix();
 
 		if (pivotSolResDegenerate == null) {
@@ -1657,13 +1712,29 @@ public class CoordMatrix {
 	 *            flat array
 	 */
 	public void getForGL(float[] val) {
-		int index = 0;
+		getForGL(val, 0);
+	}
+
+	/**
+	 * 
+	 * set values in openGL format, from offset
+	 * 
+	 * @param val
+	 *            flat array
+	 * @param offset
+	 *            offset for first value in val
+	 * @return offset after last value
+	 */
+	public int getForGL(float[] val, int offset) {
+		int index = offset;
 		for (int x = 0; x < columns; x++) {
+			double[] column = vectors[x].val;
 			for (int y = 0; y < rows; y++) {
-				val[index] = (float) get(y + 1, x + 1);
+				val[index] = (float) column[y];
 				index++;
 			}
 		}
+		return index;
 	}
 
 	/**
@@ -1692,6 +1763,7 @@ public class CoordMatrix {
 	public void subToDiagonal(double value) {
 		for (int i = 0; i < rows; i++) {
 			vectors[i].val[i] -= value;
+			vectors[i].markModified();
 		}
 
 	}
@@ -1714,6 +1786,10 @@ public class CoordMatrix {
 		vectors[2].val[0] = 0;
 		vectors[2].val[1] = 0;
 		vectors[2].val[2] = v;
+
+		vectors[0].markModified();
+		vectors[1].markModified();
+		vectors[2].markModified();
 	}
 
 	// /////////////////////////////////////////////////:
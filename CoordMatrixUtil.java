@@ -63,8 +63,76 @@ public final class CoordMatrixUtil {
 			Coords o2, Coords v2, double[] project1, double[] project2,
 			double[] lineCoords, double[] tmp) {
 
+		if (!o1.isPointAndDirections4(o2, v1, v2)) {
+			nearestPointsFromTwoLines(o1, v1, o2, v2, project1, project2,
+					lineCoords, tmp, v1.crossProduct(v2));
+			return;
+		}
+
+		// vn = v1 ^ v2
+		double[] a = v1.val, b = v2.val;
+		double x = a[1] * b[2] - a[2] * b[1];
+		double y = a[2] * b[0] - a[0] * b[2];
+		double z = a[0] * b[1] - a[1] * b[0];
+		if (DoubleUtil.isEqual(x, 0, Kernel.STANDARD_PRECISION)
+				&& DoubleUtil.isEqual(y, 0, Kernel.STANDARD_PRECISION)
+				&& DoubleUtil.isEqual(z, 0, Kernel.STANDARD_PRECISION)) {
+			// v1 and v2 are parallel, return infinite points v1 and v2
+			v1.copy(project1);
+			v2.copy(project2);
+			lineCoords[0] = Double.NaN;
+			lineCoords[1] = Double.NaN;
+			return;
+		}
+
+		// projection of o2 on plane (o1, v1, vn) with v2 direction
+		lineCoords[1] = -Coords.projectAlong(o2, o1, a[1] * z - a[2] * y,
+				a[2] * x - a[0] * z, a[0] * y - a[1] * x, v2, project2);
+
+		// projection of o1 on plane (o2, v2, vn) with v1 direction
+		lineCoords[0] = -Coords.projectAlong(o1, o2, b[1] * z - b[2] * y,
+				b[2] * x - b[0] * z, b[0] * y - b[1] * x, v1, project1);
+	}
+
+	/**
+	 * Set points from line1 and from line2 that are the nearest possible.
+	 * Return infinite points if the two lines are parallel.
+	 * 
+	 * @param o1
+	 *            origin of line1
+	 * @param v1
+	 *            direction of line1
+	 * @param o2
+	 *            origin of line2
+	 * @param v2
+	 *            direction of line2
+	 * @param project1
+	 *            point on line 1
+	 * @param project2
+	 *            point on line 2
+	 * @param lineCoords
+	 *            parameters of each point on each line
+	 * @param tmp
+	 *            tmp values (length 4)
+	 * @param scratch
+	 *            scratch for temporary vectors
+	 */
+	static public void nearestPointsFromTwoLines(Coords o1, Coords v1,
+			Coords o2, Coords v2, double[] project1, double[] project2,
+			double[] lineCoords, double[] tmp, CoordsScratch scratch) {
+		try (CoordsScratch.Scope scope = scratch.open()) {
+			Coords vn = scratch.coords(3);
+			vn.setCrossProduct3(v1, v2);
+			nearestPointsFromTwoLines(o1, v1, o2, v2, project1, project2,
+					lineCoords, tmp, vn);
+		}
+	}
+
+	static private void nearestPointsFromTwoLines(Coords o1, Coords v1,
+			Coords o2, Coords v2, double[] project1, double[] project2,
+			double[] lineCoords, double[] tmp, Coords vn) {
+
 		// if v1 and v2 are parallel, return infinite points v1 and v2
-		Coords vn = v1.crossProduct(v2);
 		if (vn.equalsForKernel(0, Kernel.STANDARD_PRECISION)) {
 			// Application.debug("v1="+v1.toString()+"\nv2="+v2.toString());
 			v1.copy(project1);
@@ -34,6 +34,7 @@ public class Coords implements AnimatableValue<Coords> {
 	private double sqNorm;
 	private boolean calcNorm = true;
 	private boolean calcSqNorm = true;
+	private int modificationStamp;
 
 	/** origin 3D point */
 	public static final Coords O = new Coords(0, 0, 0, 1);
@@ -77,6 +78,12 @@ public class Coords implements AnimatableValue<Coords> {
 	public static final Coords DARK_GRAY = new Coords(68.0 / 255.0,
 			68.0 / 255.0, 68.0 / 255.0, 1);
 
+	/** whether to use {@link AccurateKernels} */
+	private static boolean accurateKernels = false;
+
+	/** format used by {@link #toString(int)} */
+	private static ScientificFormat scientificFormat;
+
 	final public double[] val;
 
 	private int rows;
@@ -93,6 +100,28 @@ public class Coords implements AnimatableValue<Coords> {
 		return ret;
 	}
 
+	/**
+	 * Select kernels used for dot products (on x, y, z), cross products,
+	 * square norms and linear independence checks: when set,
+	 * {@link AccurateKernels} are used, that are slower but give nearly
+	 * correctly rounded results (e.g. for cross products of almost parallel
+	 * vectors).
+	 * 
+	 * @param flag
+	 *            whether to use accurate kernels
+	 */
+	public static void setAccurateKernels(boolean flag) {
+		accurateKernels = flag;
+	}
+
+	/**
+	 * @return whether accurate kernels are used, see
+	 *         {@link #setAccurateKernels(boolean)}
+	 */
+	public static boolean hasAccurateKernels() {
+		return accurateKernels;
+	}
+
 	// /////////////////////////////////////////////////:
 	// Constructors
 
@@ -202,6 +231,7 @@ public class Coords implements AnimatableValue<Coords> {
 	 *            value
 	 */
 	public void set(int i, double val0) {
+		modificationStamp++;
 		val[i - 1] = val0;
 		calcNorm = calcSqNorm = true;
 	}
@@ -219,6 +249,7 @@ public class Coords implements AnimatableValue<Coords> {
 	 *            w
 	 */
 	public void set(double x, double y, double z, double w) {
+		modificationStamp++;
 		val[0] = x;
 		val[1] = y;
 		val[2] = z;
@@ -233,6 +264,7 @@ public class Coords implements AnimatableValue<Coords> {
 	 *            values {x1, x2, ...}
 	 */
 	public void set(double[] vals0) {
+		modificationStamp++;
 		// Application.debug("-------------val.length =
 		// "+val.length+"\n-------------vals0.length = "+vals0.length);
 		for (int i = 0; i < vals0.length; i++) {
@@ -253,6 +285,7 @@ public class Coords implements AnimatableValue<Coords> {
 	 *            third value
 	 */
 	public void set(double x, double y, double z) {
+		modificationStamp++;
 		val[0] = x;
 		val[1] = y;
 		val[2] = z;
@@ -267,6 +300,7 @@ public class Coords implements AnimatableValue<Coords> {
 	 *            length first values only are updated
 	 */
 	public void setValues(Coords v, int length) {
+		modificationStamp++;
 		for (int i = 0; i < length; i++) {
 			val[i] = v.val[i];
 		}
@@ -289,6 +323,7 @@ public class Coords implements AnimatableValue<Coords> {
 	 *            coords
 	 */
 	public void set3(Coords v) {
+		modificationStamp++;
 		val[0] = v.val[0];
 		val[1] = v.val[1];
 		val[2] = v.val[2];
@@ -301,6 +336,7 @@ public class Coords implements AnimatableValue<Coords> {
 	 *            coords
 	 */
 	public void set4(Coords v) {
+		modificationStamp++;
 		val[0] = v.val[0];
 		val[1] = v.val[1];
 		val[2] = v.val[2];
@@ -314,6 +350,7 @@ public class Coords implements AnimatableValue<Coords> {
 	 *            coords
 	 */
 	public void set2(Coords v) {
+		modificationStamp++;
 		val[0] = v.val[0];
 		val[1] = v.val[1];
 	}
@@ -326,6 +363,7 @@ public class Coords implements AnimatableValue<Coords> {
 	 *            coordinate
 	 */
 	public void set(double val0) {
+		modificationStamp++;
 		for (int i = 0; i < rows; i++) {
 			val[i] = val0;
 		}
@@ -422,6 +460,7 @@ public class Coords implements AnimatableValue<Coords> {
 	 *            val
 	 */
 	public void setX(double val) {
+		modificationStamp++;
 		this.val[0] = val;
 		calcNorm = calcSqNorm = true;
 	}
@@ -433,6 +472,7 @@ public class Coords implements AnimatableValue<Coords> {
 	 *            val
 	 */
 	public void setY(double val) {
+		modificationStamp++;
 		this.val[1] = val;
 		calcNorm = calcSqNorm = true;
 	}
@@ -444,6 +484,7 @@ public class Coords implements AnimatableValue<Coords> {
 	 *            val
 	 */
 	public void setZ(double val) {
+		modificationStamp++;
 		this.val[2] = val;
 		calcNorm = calcSqNorm = true;
 	}
@@ -455,6 +496,7 @@ public class Coords implements AnimatableValue<Coords> {
 	 *            val
 	 */
 	public void setW(double val) {
+		modificationStamp++;
 		this.val[3] = val;
 		calcNorm = calcSqNorm = true;
 	}
@@ -468,6 +510,32 @@ public class Coords implements AnimatableValue<Coords> {
 		return rows;
 	}
 
+	/**
+	 * norm and square norm will be recomputed on next call
+	 */
+	final void setNormsToRecompute() {
+		calcNorm = calcSqNorm = true;
+	}
+
+	/**
+	 * Each method changing values increases this stamp, so that callers can
+	 * check if this has changed since last time they used it (compare stamps
+	 * with == only, they may overflow).
+	 * 
+	 * @return modification stamp
+	 */
+	public int getModificationStamp() {
+		return modificationStamp;
+	}
+
+	/**
+	 * increase modification stamp; must be called after values in
+	 * {@link #val} have been changed directly
+	 */
+	public void markModified() {
+		modificationStamp++;
+	}
+
 	/**
 	 * returns a copy of the vector
 	 * 
@@ -522,6 +590,7 @@ public class Coords implements AnimatableValue<Coords> {
 	 * @return this
 	 */
 	public Coords setSubVector(Coords v, int start, int end) {
+		modificationStamp++;
 		int r = end - start + 1;
 		for (int i = 0; i < r; i++) {
 			val[i] = v.val[start + i - 1];
@@ -570,6 +639,7 @@ public class Coords implements AnimatableValue<Coords> {
 	 * @return this
 	 */
 	public Coords setSubVector(Coords v, int row) {
+		modificationStamp++;
 
 		for (int i = 0; i < row; i++) {
 			val[i] = v.val[i];
@@ -596,6 +666,14 @@ public class Coords implements AnimatableValue<Coords> {
 	 * @return value of the dot product
 	 */
 	public double dotproduct(Coords v) {
+		double[] a = v.val;
+		if (rows == 4 && a.length == 4) {
+			return val[0] * a[0] + val[1] * a[1] + val[2] * a[2]
+					+ val[3] * a[3];
+		}
+		if (rows == 3 && a.length == 3) {
+			return val[0] * a[0] + val[1] * a[1] + val[2] * a[2];
+		}
 		int len = Math.min(getLength(), v.getLength());
 		double res = 0;
 		for (int i = 0; i < len; i++) {
@@ -615,6 +693,10 @@ public class Coords implements AnimatableValue<Coords> {
 	 * @return value of the dot product
 	 */
 	public double dotproduct3(Coords v) {
+		if (accurateKernels) {
+			return AccurateKernels.dotproduct3(val[0], val[1], val[2],
+					v.val[0], v.val[1], v.val[2]);
+		}
 		double res = 0;
 		for (int i = 0; i < 3; i++) {
 			res += val[i] * v.val[i];
@@ -687,6 +769,12 @@ public class Coords implements AnimatableValue<Coords> {
 	 *            v2
 	 */
 	final public void setCrossProduct3(Coords v1, Coords v2) {
+		modificationStamp++;
+		if (accurateKernels) {
+			AccurateKernels.crossProduct3(v1.val, v2.val, val);
+			calcNorm = calcSqNorm = true;
+			return;
+		}
 		val[0] = v1.val[1] * v2.val[2] - v1.val[2] * v2.val[1];
 		val[1] = v1.val[2] * v2.val[0] - v1.val[0] * v2.val[2];
 		val[2] = v1.val[0] * v2.val[1] - v1.val[1] * v2.val[0];
@@ -714,6 +802,9 @@ public class Coords implements AnimatableValue<Coords> {
 	 * @return this dot (v1 cross v2)
 	 */
 	final public double dotCrossProduct(Coords v1, Coords v2) {
+		if (accurateKernels) {
+			return AccurateKernels.dotCrossProduct(val, v1.val, v2.val);
+		}
 		return val[0] * (v1.val[1] * v2.val[2] - v1.val[2] * v2.val[1])
 				+ val[1] * (v1.val[2] * v2.val[0] - v1.val[0] * v2.val[2])
 				+ val[2] * (v1.val[0] * v2.val[1] - v1.val[1] * v2.val[0]);
@@ -727,6 +818,14 @@ public class Coords implements AnimatableValue<Coords> {
 	 * @return true if this and v are linear independent
 	 */
 	final public boolean isLinearIndependent(Coords v) {
+		if (accurateKernels) {
+			return !DoubleUtil.isZero(AccurateKernels.diffOfProducts(val[1],
+					v.val[2], val[2], v.val[1]))
+					|| !DoubleUtil.isZero(AccurateKernels.diffOfProducts(val[2],
+							v.val[0], val[0], v.val[2]))
+					|| !DoubleUtil.isZero(AccurateKernels.diffOfProducts(val[0],
+							v.val[1], val[1], v.val[0]));
+		}
 		double value;
 
 		value = val[1] * v.val[2] - val[2] * v.val[1];
@@ -746,6 +845,59 @@ public class Coords implements AnimatableValue<Coords> {
 
 	}
 
+	/**
+	 * Assuming this is a 3D vector. Exact version of
+	 * {@link #isLinearIndependent(Coords)} (no precision used).
+	 * 
+	 * @param v
+	 *            vector
+	 * @return true if this and v are linear independent
+	 */
+	final public boolean isLinearIndependentExact(Coords v) {
+		return GeometricPredicates.diffOfProducts(val[1], v.val[2], val[2],
+				v.val[1]) != 0
+				|| GeometricPredicates.diffOfProducts(val[2], v.val[0], val[0],
+						v.val[2]) != 0
+				|| GeometricPredicates.diffOfProducts(val[0], v.val[1], val[1],
+						v.val[0]) != 0;
+	}
+
+	/**
+	 * Exact version of {@link #isLinearIndependentAllCoords(Coords)} (no
+	 * precision used).
+	 * 
+	 * @param v
+	 *            vector
+	 * @return whether this and v are independent
+	 */
+	final public boolean isLinearIndependentAllCoordsExact(Coords v) {
+		int len = getLength();
+		for (int i = 0; i < len; i++) {
+			for (int j = i + 1; j < len; j++) {
+				if (GeometricPredicates.diffOfProducts(val[i], v.val[j],
+						val[j], v.val[i]) != 0) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Assuming all are 3D vectors. Exact version of
+	 * {@link #isDependentToOrtho(Coords, Coords)} (no precision used, and u,
+	 * v need not be orthogonal).
+	 * 
+	 * @param u
+	 *            vector
+	 * @param v
+	 *            vector
+	 * @return true if crossProduct(u,v)*this is zero
+	 */
+	final public boolean isDependentExact(Coords u, Coords v) {
+		return GeometricPredicates.det3(this, u, v) == 0;
+	}
+
 	/**
 	 * @param v
 	 *            vector
@@ -833,6 +985,10 @@ public class Coords implements AnimatableValue<Coords> {
 	 * @return the square norm
 	 */
 	public double calcSquareNorm() {
+		if (accurateKernels) {
+			sqNorm = AccurateKernels.squareNorm(val, val.length);
+			return sqNorm;
+		}
 		sqNorm = 0;
 		for (int i = 0; i < val.length; i++) {
 			sqNorm += val[i] * val[i];
@@ -935,6 +1091,7 @@ public class Coords implements AnimatableValue<Coords> {
 	 * @return this
 	 */
 	public Coords setNormalized(Coords vector, boolean checkOneDirection) {
+		modificationStamp++;
 		vector.calcNorm();
 		double normInv = 1 / vector.getNorm();
 		for (int i = 0; i < rows; i++) {
@@ -966,6 +1123,7 @@ public class Coords implements AnimatableValue<Coords> {
 	 *            output: normalized coords
 	 */
 	public void normalized(Coords ret) {
+		ret.modificationStamp++;
 		calcNorm();
 		double normInv = 1 / getNorm();
 		for (int i = 0; i < ret.rows; i++) {
@@ -991,6 +1149,7 @@ public class Coords implements AnimatableValue<Coords> {
 	 * @return this normalized
 	 */
 	public Coords normalize(boolean recalcNorm) {
+		modificationStamp++;
 
 		if (recalcNorm) {
 			calcNorm();
@@ -1015,7 +1174,12 @@ public class Coords implements AnimatableValue<Coords> {
 	 * @return (this-v).norm()
 	 */
 	public double distance(Coords v) {
-		return this.sub(v).norm();
+		double sq = 0;
+		for (int i = 0; i < rows; i++) {
+			double d = val[i] - v.val[i];
+			sq += d * d;
+		}
+		return Math.sqrt(sq);
 	}
 	
 	/**
@@ -1062,6 +1226,88 @@ public class Coords implements AnimatableValue<Coords> {
 		return OM.sub(OH);
 	}
 
+	/**
+	 * square norm of the shortest vector between this and a 3D-line
+	 * represented by the matrix {V O}, computed without temporary vectors
+	 * 
+	 * @param lineO
+	 *            origin of the line
+	 * @param V
+	 *            direction of the line
+	 * @param len
+	 *            number of coords used for the norm
+	 * @return square norm of vectorToLine(lineO, V), on len first coords
+	 *         (V must have at least len coords)
+	 */
+	private double squareNormOfVectorToLine(Coords lineO, Coords V,
+			int len) {
+		// N = V normalized, OM = this - lineO, OH = (OM.N) N
+		double normInv = 1 / V.calcNorm();
+		int dotLen = Math.min(rows, V.rows);
+		double omDotN = 0;
+		for (int i = 0; i < dotLen; i++) {
+			omDotN += (val[i] - lineO.val[i]) * (V.val[i] * normInv);
+		}
+		double ret = 0;
+		for (int i = 0; i < len; i++) {
+			double d = (val[i] - lineO.val[i]) - (V.val[i] * normInv) * omDotN;
+			ret += d * d;
+		}
+		return ret;
+	}
+
+	/**
+	 * @param o
+	 *            point
+	 * @param u
+	 *            direction
+	 * @param v
+	 *            direction
+	 * @return whether this and o are 4-length points and u, v are 4-length
+	 *         directions (w = 0), i.e. projections can use closed forms
+	 */
+	final boolean isPointAndDirections4(Coords o, Coords u, Coords v) {
+		return rows == 4 && o.rows == 4 && u.rows == 4 && v.rows == 4
+				&& u.val[3] == 0 && v.val[3] == 0;
+	}
+
+	/**
+	 * Closed form of {@link #projectPlaneNoCheck} for 4-length points and
+	 * directions (see {@link #isPointAndDirections4}), when the plane normal
+	 * n is known: m - c vz is on the plane through o with normal n.
+	 *
+	 * @param m
+	 *            projected point
+	 * @param o
+	 *            origin of the plane
+	 * @param nx
+	 *            normal x
+	 * @param ny
+	 *            normal y
+	 * @param nz
+	 *            normal z
+	 * @param vz
+	 *            direction of projection
+	 * @param global
+	 *            output: m - c vz (may be null)
+	 * @return c (in-plane z coord of m)
+	 */
+	static double projectAlong(Coords m, Coords o, double nx, double ny,
+			double nz, Coords vz, double[] global) {
+		double[] p = m.val, q = o.val, d = vz.val;
+		double f = p[3] / q[3];
+		double c = ((p[0] - f * q[0]) * nx + (p[1] - f * q[1]) * ny
+				+ (p[2] - f * q[2]) * nz)
+				/ (d[0] * nx + d[1] * ny + d[2] * nz);
+		if (global != null) {
+			global[0] = p[0] - c * d[0];
+			global[1] = p[1] - c * d[1];
+			global[2] = p[2] - c * d[2];
+			global[3] = p[3];
+		}
+		return c;
+	}
+
 	/**
 	 * returns the distance between this and a 3D-line represented by the matrix
 	 * {V O}
@@ -1073,7 +1319,10 @@ public class Coords implements AnimatableValue<Coords> {
 	 * @return distance between this and the line
 	 */
 	public double distLine(Coords lineO, Coords V) {
-		return vectorToLine(lineO, V).norm();
+		if (V.rows < rows) {
+			return vectorToLine(lineO, V).norm();
+		}
+		return Math.sqrt(squareNormOfVectorToLine(lineO, V, rows));
 	}
 
 	/**
@@ -1087,8 +1336,12 @@ public class Coords implements AnimatableValue<Coords> {
 	 * @return distance between this and the line
 	 */
 	public double squareDistLine3(Coords lineO, Coords V) {
-		Coords v = vectorToLine(lineO, V);
-		return v.getX() * v.getX() + v.getY() * v.getY() + v.getZ() * v.getZ();
+		if (rows < 3 || V.rows < rows) {
+			Coords v = vectorToLine(lineO, V);
+			return v.getX() * v.getX() + v.getY() * v.getY()
+					+ v.getZ() * v.getZ();
+		}
+		return squareNormOfVectorToLine(lineO, V, 3);
 	}
 
 	/**
@@ -1166,6 +1419,8 @@ public class Coords implements AnimatableValue<Coords> {
 	 */
 	public void projectPlane(Coords vx, Coords vy, Coords vz, Coords o,
 			Coords globalCoords, Coords inPlaneCoords) {
+		globalCoords.modificationStamp++;
+		inPlaneCoords.modificationStamp++;
 		projectPlane(vx, vy, vz, o, globalCoords.val, inPlaneCoords.val);
 	}
 
@@ -1194,7 +1449,7 @@ public class Coords implements AnimatableValue<Coords> {
 	public void projectPlane(Coords vx, Coords vy, Coords vz, Coords o,
 			double[] globalCoords, double[] inPlaneCoords) {
 
-		if (DoubleUtil.isEqual((vx.crossProduct(vy)).dotproduct(vz), 0,
+		if (DoubleUtil.isEqual(vz.dotCrossProduct(vx, vy), 0,
 				Kernel.STANDARD_PRECISION)) {
 			// direction of projection is parallel to the plane : point is
 			// infinite
@@ -1265,6 +1520,7 @@ public class Coords implements AnimatableValue<Coords> {
 		}
 
 		// direction is not parallel to the plane
+		inPlaneCoords.modificationStamp++;
 		projectPlaneNoCheckInPlaneCoords(vx, vy, vz, o, inPlaneCoords.val);
 	}
 
@@ -1318,6 +1574,7 @@ public class Coords implements AnimatableValue<Coords> {
 
 		// direction is not parallel to the plane
 		// we can use globalCoords twice as it will be set at this end
+		globalCoords.modificationStamp++;
 		projectPlaneNoCheck(vx, vy, vz, o, globalCoords.val, globalCoords.val);
 	}
 
@@ -1375,6 +1632,9 @@ public class Coords implements AnimatableValue<Coords> {
 	 * plane.
 	 * <p>
 	 * Attempt this to be of dimension 4, and the matrix to be of dimension 4*4.
+	 * <p>
+	 * The solving matrix is owned by this: the same Coords must not be
+	 * projected by several threads at the same time.
 	 * 
 	 * @param vx
 	 *            vx
@@ -1641,11 +1901,7 @@ public class Coords implements AnimatableValue<Coords> {
 	 *            {parameter on the line, normalized parameter}
 	 */
 	public void projectLine(Coords o, Coords v, Coords h, double[] parameters) {
-		this.sub(o, h); // OM
-		Coords N = v.normalized();
-		double parameter = h.dotproduct(N); // OM.N
-		N.mul(parameter, h); // OH
-		o.add(h, h);
+		double parameter = projectLineNormalized(o, v, h);
 
 		if (parameters == null) {
 			return;
@@ -1700,11 +1956,44 @@ public class Coords implements AnimatableValue<Coords> {
 	 *            point projected
 	 */
 	public void projectLine(Coords o, Coords V, Coords H) {
+		projectLineNormalized(o, V, H);
+	}
+
+	/**
+	 * set H to projection of this on the line (o, V), without temporary
+	 * vectors
+	 * 
+	 * @param o
+	 *            origin of the line
+	 * @param V
+	 *            direction of the line
+	 * @param H
+	 *            point projected
+	 * @return normalized parameter of H on the line
+	 */
+	private double projectLineNormalized(Coords o, Coords V, Coords H) {
+		if (H == V) {
+			this.sub(o, H); // OM
+			Coords N = V.normalized();
+			double parameter = H.dotproduct(N); // OM.N
+			N.mul(parameter, H); // OH
+			o.add(H, H);
+			return parameter;
+		}
 		this.sub(o, H); // OM
-		Coords N = V.normalized();
-		double parameter = H.dotproduct(N); // OM.N
-		N.mul(parameter, H); // OH
+		// N = V normalized
+		double normInv = 1 / V.calcNorm();
+		int len = Math.min(H.rows, V.rows);
+		double parameter = 0; // OM.N
+		for (int i = 0; i < len; i++) {
+			parameter += H.val[i] * (V.val[i] * normInv);
+		}
+		// OH
+		for (int i = 0; i < len; i++) {
+			H.val[i] = (V.val[i] * normInv) * parameter;
+		}
 		o.add(H, H);
+		return parameter;
 	}
 
 	/**
@@ -1721,8 +2010,60 @@ public class Coords implements AnimatableValue<Coords> {
 	 *            output point projected
 	 */
 	public void projectNearLine(Coords o, Coords V, Coords V2, Coords project) {
-		Coords V3 = V.crossProduct(V2);
+		if (!isPointAndDirections4(o, V, V2)) {
+			projectNearLine(o, V, V2, project, V.crossProduct(V2));
+			return;
+		}
+		// V3 = V ^ V2
+		double[] a = V.val, b = V2.val;
+		double x3 = a[1] * b[2] - a[2] * b[1];
+		double y3 = a[2] * b[0] - a[0] * b[2];
+		double z3 = a[0] * b[1] - a[1] * b[0];
+		if (DoubleUtil.isEqual(Math.sqrt(x3 * x3 + y3 * y3 + z3 * z3), 0.0,
+				Kernel.STANDARD_PRECISION)) {
+			project.set(this);
+			return;
+		}
+		// normal of plane (o, V, V3)
+		double nx = a[1] * z3 - a[2] * y3;
+		double ny = a[2] * x3 - a[0] * z3;
+		double nz = a[0] * y3 - a[1] * x3;
+		if (DoubleUtil.isZero(nx * b[0] + ny * b[1] + nz * b[2])) {
+			// V2 parallel to the plane
+			project.set(V2);
+			return;
+		}
+		project.modificationStamp++;
+		project.setNormsToRecompute();
+		projectAlong(this, o, nx, ny, nz, V2, project.val);
+	}
 
+	/**
+	 * calculates projection of this as close as possible to the 3D-line
+	 * represented by the matrix {V O} regarding V2 direction.
+	 * 
+	 * @param o
+	 *            origin of the line
+	 * @param V
+	 *            direction of the line
+	 * @param V2
+	 *            direction of projection
+	 * @param project
+	 *            output point projected
+	 * @param scratch
+	 *            scratch for temporary vectors
+	 */
+	public void projectNearLine(Coords o, Coords V, Coords V2, Coords project,
+			CoordsScratch scratch) {
+		try (CoordsScratch.Scope scope = scratch.open()) {
+			Coords V3 = scratch.coords(3);
+			V3.setCrossProduct3(V, V2);
+			projectNearLine(o, V, V2, project, V3);
+		}
+	}
+
+	private void projectNearLine(Coords o, Coords V, Coords V2,
+			Coords project, Coords V3) {
 		if (DoubleUtil.isEqual(V3.norm(), 0.0, Kernel.STANDARD_PRECISION)) {
 			project.set(this);
 			return;
@@ -1749,8 +2090,61 @@ public class Coords implements AnimatableValue<Coords> {
 	 */
 	public double projectedParameterOnLineWithDirection(Coords o, Coords V,
 			Coords V2, Coords tmp) {
-		Coords V3 = V.crossProduct4(V2);
+		if (!o.isPointAndDirections4(this, V, V2)) {
+			return projectedParameterOnLineWithDirection(o, V, V2, tmp,
+					V.crossProduct4(V2));
+		}
+		// V3 = V ^ V2
+		double[] a = V.val, b = V2.val;
+		double x3 = a[1] * b[2] - a[2] * b[1];
+		double y3 = a[2] * b[0] - a[0] * b[2];
+		double z3 = a[0] * b[1] - a[1] * b[0];
+		if (DoubleUtil.isEqual(x3, 0, Kernel.STANDARD_PRECISION)
+				&& DoubleUtil.isEqual(y3, 0, Kernel.STANDARD_PRECISION)
+				&& DoubleUtil.isEqual(z3, 0, Kernel.STANDARD_PRECISION)) {
+			return 0;
+		}
+		// normal of plane (this, V2, V3)
+		double nx = b[1] * z3 - b[2] * y3;
+		double ny = b[2] * x3 - b[0] * z3;
+		double nz = b[0] * y3 - b[1] * x3;
+		if (DoubleUtil.isZero(nx * a[0] + ny * a[1] + nz * a[2])) {
+			// V parallel to the plane: infinite point (0, 0, -1, 0)
+			tmp.set(0, 0, -1, 0);
+			return 1;
+		}
+		return -projectAlong(o, this, nx, ny, nz, V, null);
+	}
+
+	/**
+	 * Calc the parameter on (O,V) of the point of (O,V) that is the nearest to
+	 * line (this,V2).
+	 * 
+	 * If V and V2 are parallel, return O.
+	 * 
+	 * @param o
+	 *            origin of the line where this is projected
+	 * @param V
+	 *            direction of the line where this is projected
+	 * @param V2
+	 *            direction of projection
+	 * @param tmp
+	 *            temp coords
+	 * @param scratch
+	 *            scratch for temporary vectors
+	 * @return parameter of the proj. point on the line
+	 */
+	public double projectedParameterOnLineWithDirection(Coords o, Coords V,
+			Coords V2, Coords tmp, CoordsScratch scratch) {
+		try (CoordsScratch.Scope scope = scratch.open()) {
+			Coords V3 = scratch.coords(4);
+			V3.setCrossProduct4(V, V2);
+			return projectedParameterOnLineWithDirection(o, V, V2, tmp, V3);
+		}
+	}
 
+	private double projectedParameterOnLineWithDirection(Coords o, Coords V,
+			Coords V2, Coords tmp, Coords V3) {
 		if (V3.isZero()) {
 			return 0;
 		}
@@ -1788,6 +2182,7 @@ public class Coords implements AnimatableValue<Coords> {
 	 *            gets this - v
 	 */
 	public void sub(Coords v, Coords result) {
+		result.modificationStamp++;
 		for (int i = 0; i < result.rows; i++) {
 			result.val[i] = val[i] - v.val[i];
 		}
@@ -1803,6 +2198,21 @@ public class Coords implements AnimatableValue<Coords> {
 	 * @return this
 	 */
 	public Coords setSub(Coords v1, Coords v2) {
+		modificationStamp++;
+		double[] a = v1.val, b = v2.val;
+		if (rows == 4) {
+			val[0] = a[0] - b[0];
+			val[1] = a[1] - b[1];
+			val[2] = a[2] - b[2];
+			val[3] = a[3] - b[3];
+			return this;
+		}
+		if (rows == 3) {
+			val[0] = a[0] - b[0];
+			val[1] = a[1] - b[1];
+			val[2] = a[2] - b[2];
+			return this;
+		}
 		for (int i = 0; i < rows; i++) {
 			val[i] = v1.val[i] - v2.val[i];
 		}
@@ -1820,6 +2230,7 @@ public class Coords implements AnimatableValue<Coords> {
 	 * @return this
 	 */
 	public Coords setSub3(Coords v1, Coords v2) {
+		modificationStamp++;
 		for (int i = 0; i < 3; i++) {
 			val[i] = v1.val[i] - v2.val[i];
 		}
@@ -1870,6 +2281,7 @@ public class Coords implements AnimatableValue<Coords> {
 	 * @return this
 	 */
 	public Coords setInhomCoords(Coords v) {
+		modificationStamp++;
 
 		double wdiv = 1 / v.val[rows - 1];
 		for (int i = 0; i < rows - 1; i++) {
@@ -1928,6 +2340,7 @@ public class Coords implements AnimatableValue<Coords> {
 	 * set values in inhom coords
 	 */
 	public void setInhomCoords() {
+		modificationStamp++;
 		if (DoubleUtil.isEqual(val[rows - 1], 1)) {
 			return;
 		}
@@ -1976,6 +2389,7 @@ public class Coords implements AnimatableValue<Coords> {
 	 * @return this
 	 */
 	public Coords setCoordsLast1(Coords v) {
+		modificationStamp++;
 		double lastCoord = v.val[rows - 1];
 		if (lastCoord != 0.0) {
 			double lastCoordInv = 1 / lastCoord;
@@ -2012,6 +2426,7 @@ public class Coords implements AnimatableValue<Coords> {
 	 * @return this
 	 */
 	public Coords setProjectInfDim(Coords v) {
+		modificationStamp++;
 		for (int i = 0; i < v.rows - 1; i++) {
 			val[i] = v.val[i];
 		}
@@ -2178,6 +2593,7 @@ public class Coords implements AnimatableValue<Coords> {
 	 *            vector (length 4)
 	 */
 	public void completeOrthonormal(Coords vn1, Coords vn2) {
+		vn1.modificationStamp++;
 		if (val[0] != 0) {
 			vn1.val[0] = -val[1];
 			vn1.val[1] = val[0];
@@ -2207,6 +2623,7 @@ public class Coords implements AnimatableValue<Coords> {
 	 *            vector (length 3)
 	 */
 	public void completeOrthonormal3(Coords vn1, Coords vn2) {
+		vn1.modificationStamp++;
 		if (val[0] != 0) {
 			vn1.val[0] = -val[1];
 			vn1.val[1] = val[0];
@@ -2230,6 +2647,7 @@ public class Coords implements AnimatableValue<Coords> {
 	 *            vector (length 4)
 	 */
 	public void completeOrthonormal(Coords vn1) {
+		vn1.modificationStamp++;
 		if (val[2] != 0) {
 			vn1.val[2] = -val[1];
 			vn1.val[1] = val[2];
@@ -2266,6 +2684,7 @@ public class Coords implements AnimatableValue<Coords> {
 	 *            vector (length 3)
 	 */
 	public void completeOrthonormalKeepInXOYPlaneIfPossible3(Coords vn1) {
+		vn1.modificationStamp++;
 		if (!DoubleUtil.isZero(val[0]) || !DoubleUtil.isZero(val[1])) {
 			vn1.val[0] = -val[1];
 			vn1.val[1] = val[0];
@@ -2358,6 +2777,7 @@ public class Coords implements AnimatableValue<Coords> {
 	 * @return this
 	 */
 	public Coords addInside(Coords v) {
+		modificationStamp++;
 		for (int i = 0; i < v.val.length; i++) {
 			val[i] += v.val[i];
 		}
@@ -2374,6 +2794,7 @@ public class Coords implements AnimatableValue<Coords> {
 	 * @return this
 	 */
 	public Coords addInsideMul(Coords v, double coeff) {
+		modificationStamp++;
 		for (int i = 0; i < v.val.length; i++) {
 			val[i] += coeff * v.val[i];
 		}
@@ -2387,6 +2808,7 @@ public class Coords implements AnimatableValue<Coords> {
 	 *            value
 	 */
 	public void addInside(double v) {
+		modificationStamp++;
 		for (int i = 0; i < rows; i++) {
 			val[i] += v;
 		}
@@ -2435,6 +2857,7 @@ public class Coords implements AnimatableValue<Coords> {
 	 *            gets this * val0
 	 */
 	public void mul(double val0, Coords res) {
+		res.modificationStamp++;
 		for (int i = 0; i < res.rows && i < rows; i++) {
 			res.val[i] = val[i] * val0;
 		}
@@ -2450,6 +2873,21 @@ public class Coords implements AnimatableValue<Coords> {
 	 * @return this
 	 */
 	public Coords setMul(Coords v, double val0) {
+		modificationStamp++;
+		double[] a = v.val;
+		if (rows == 4 && v.rows >= 4) {
+			val[0] = a[0] * val0;
+			val[1] = a[1] * val0;
+			val[2] = a[2] * val0;
+			val[3] = a[3] * val0;
+			return this;
+		}
+		if (rows == 3 && v.rows >= 3) {
+			val[0] = a[0] * val0;
+			val[1] = a[1] * val0;
+			val[2] = a[2] * val0;
+			return this;
+		}
 		for (int i = 0; i < rows && i < v.rows; i++) {
 			val[i] = v.val[i] * val0;
 		}
@@ -2467,6 +2905,7 @@ public class Coords implements AnimatableValue<Coords> {
 	 * @return this
 	 */
 	public Coords setMul3(Coords v, double val0) {
+		modificationStamp++;
 		for (int i = 0; i < 3; i++) {
 			val[i] = v.val[i] * val0;
 		}
@@ -2495,6 +2934,7 @@ public class Coords implements AnimatableValue<Coords> {
 	 *            gets this + v
 	 */
 	public void add(Coords v, Coords res) {
+		res.modificationStamp++;
 		for (int i = 0; i < res.rows; i++) {
 			res.val[i] = v.val[i] + val[i];
 		}
@@ -2510,6 +2950,21 @@ public class Coords implements AnimatableValue<Coords> {
 	 * @return this
 	 */
 	public Coords setAdd(Coords v1, Coords v2) {
+		modificationStamp++;
+		double[] a = v1.val, b = v2.val;
+		if (rows == 4) {
+			val[0] = a[0] + b[0];
+			val[1] = a[1] + b[1];
+			val[2] = a[2] + b[2];
+			val[3] = a[3] + b[3];
+			return this;
+		}
+		if (rows == 3) {
+			val[0] = a[0] + b[0];
+			val[1] = a[1] + b[1];
+			val[2] = a[2] + b[2];
+			return this;
+		}
 		for (int i = 0; i < rows; i++) {
 			val[i] = v1.val[i] + v2.val[i];
 		}
@@ -2527,6 +2982,7 @@ public class Coords implements AnimatableValue<Coords> {
 	 * @return this
 	 */
 	public Coords setAdd3(Coords v1, Coords v2) {
+		modificationStamp++;
 		for (int i = 0; i < 3; i++) {
 			val[i] = v1.val[i] + v2.val[i];
 		}
@@ -2542,6 +2998,7 @@ public class Coords implements AnimatableValue<Coords> {
 	 * @return this
 	 */
 	public Coords setBarycenter(Coords... v) {
+		modificationStamp++;
 		double f = 1.0 / v.length;
 		for (int i = 0; i < rows; i++) {
 			val[i] = 0;
@@ -2688,6 +3145,7 @@ public class Coords implements AnimatableValue<Coords> {
 	 */
 	@Override
 	public void setUndefined() {
+		modificationStamp++;
 		val[0] = Double.NaN;
 	}
 
@@ -2695,6 +3153,7 @@ public class Coords implements AnimatableValue<Coords> {
 	 * set all values to Double.POSITIVE_INFINITY
 	 */
 	public void setPositiveInfinity() {
+		modificationStamp++;
 		for (int i = 0; i < rows; i++) {
 			val[i] = Double.POSITIVE_INFINITY;
 		}
@@ -2704,6 +3163,7 @@ public class Coords implements AnimatableValue<Coords> {
 	 * set all values to Double.NEGATIVE_INFINITY
 	 */
 	public void setNegativeInfinity() {
+		modificationStamp++;
 		for (int i = 0; i < rows; i++) {
 			val[i] = Double.NEGATIVE_INFINITY;
 		}
@@ -2716,9 +3176,21 @@ public class Coords implements AnimatableValue<Coords> {
 	 *            output array
 	 */
 	public void get3ForGL(float[] ret) {
-		for (int i = 0; i < 3; i++) {
-			ret[i] = (float) val[i];
-		}
+		get3ForGL(ret, 0);
+	}
+
+	/**
+	 * set 3 floats in array, from offset
+	 * 
+	 * @param ret
+	 *            output array
+	 * @param offset
+	 *            offset for x in ret
+	 */
+	public void get3ForGL(float[] ret, int offset) {
+		ret[offset] = (float) val[0];
+		ret[offset + 1] = (float) val[1];
+		ret[offset + 2] = (float) val[2];
 	}
 
 	/**
@@ -2728,9 +3200,22 @@ public class Coords implements AnimatableValue<Coords> {
 	 *            output array
 	 */
 	public void get4ForGL(float[] ret) {
-		for (int i = 0; i < 4; i++) {
-			ret[i] = (float) val[i];
-		}
+		get4ForGL(ret, 0);
+	}
+
+	/**
+	 * set 4 floats in array, from offset
+	 * 
+	 * @param ret
+	 *            output array
+	 * @param offset
+	 *            offset for x in ret
+	 */
+	public void get4ForGL(float[] ret, int offset) {
+		ret[offset] = (float) val[0];
+		ret[offset + 1] = (float) val[1];
+		ret[offset + 2] = (float) val[2];
+		ret[offset + 3] = (float) val[3];
 	}
 
 	/**
@@ -2738,6 +3223,7 @@ public class Coords implements AnimatableValue<Coords> {
 	 * negative
 	 */
 	public void checkReverseForFirstValuePositive() {
+		modificationStamp++;
 		boolean zero = true;
 		int i = 0;
 		while (i < val.length && zero) {
@@ -2809,6 +3295,14 @@ public class Coords implements AnimatableValue<Coords> {
 	 * @return this
 	 */
 	public Coords mulInside(double v) {
+		modificationStamp++;
+		if (rows == 4) {
+			val[0] *= v;
+			val[1] *= v;
+			val[2] *= v;
+			val[3] *= v;
+			return this;
+		}
 		for (int i = 0; i < val.length; i++) {
 			val[i] *= v;
 		}
@@ -2824,6 +3318,7 @@ public class Coords implements AnimatableValue<Coords> {
 	 * @return this
 	 */
 	public Coords mulInside3(double v) {
+		modificationStamp++;
 		for (int i = 0; i < 3; i++) {
 			val[i] *= v;
 		}
@@ -2841,6 +3336,7 @@ public class Coords implements AnimatableValue<Coords> {
 	 *            z scale
 	 */
 	public void mulInside(double sx, double sy, double sz) {
+		modificationStamp++;
 		val[0] *= sx;
 		val[1] *= sy;
 		val[2] *= sz;
@@ -2859,6 +3355,7 @@ public class Coords implements AnimatableValue<Coords> {
 	 *            z scale
 	 */
 	public void setMul(Coords coords, double sx, double sy, double sz) {
+		modificationStamp++;
 		val[0] = coords.val[0] * sx;
 		val[1] = coords.val[1] * sy;
 		val[2] = coords.val[2] * sz;
@@ -2883,15 +3380,17 @@ public class Coords implements AnimatableValue<Coords> {
 	 * @return string representation with decimal precision
 	 */
 	public String toString(int precision) {
-		ScientificFormatAdapter nf = FormatFactory.getPrototype()
-				.getScientificFormat(2, 10, false);
+		ScientificFormatAdapter nf = getScientificFormat();
 		StringBuilder s = new StringBuilder("(");
 		for (int i = 0; i < val.length; i++) {
 			if (val[i] > 0) {
 				s.append('+');
 			}
 			if (val[i] == 0) {
-				s.append("+0.").append(StringUtil.repeat('0', precision));
+				s.append("+0.");
+				for (int j = 0; j < precision; j++) {
+					s.append('0');
+				}
 			} else {
 				StringUtil.appendFormat(s, val[i], nf);
 			}
@@ -2918,17 +3417,69 @@ public class Coords implements AnimatableValue<Coords> {
 		return s.toString();
 	}
 
+	/**
+	 * @return scientific format of {@link #toString(int)}, created once per
+	 *         format factory
+	 */
+	private static ScientificFormatAdapter getScientificFormat() {
+		FormatFactory factory = FormatFactory.getPrototype();
+		ScientificFormat format = scientificFormat;
+		if (format == null || format.factory != factory) {
+			format = new ScientificFormat(factory,
+					factory.getScientificFormat(2, 10, false));
+			scientificFormat = format;
+		}
+		return format.format;
+	}
+
+	/**
+	 * append fixed-point representation "(+x.xx  -y.yy  ...)", without
+	 * allocation (see {@link DecimalAppender})
+	 * 
+	 * @param s
+	 *            output
+	 * @param digits
+	 *            max digits of integer parts
+	 * @param precision
+	 *            decimal precision
+	 * @return s
+	 */
+	public StringBuilder appendTo(StringBuilder s, int digits, int precision) {
+		s.append('(');
+		for (int i = 0; i < val.length; i++) {
+			DecimalAppender.append(s, val[i], digits, precision);
+			s.append(i == val.length - 1 ? ")" : "  ");
+		}
+		return s;
+	}
+
 	/**
 	 * set this = m*v
 	 * 
+	 * v must not be this: the general case writes this while reading v.
+	 * 
 	 * @param m
 	 *            matrix
 	 * @param v
-	 *            vector
+	 *            vector (not this)
 	 * @return this
 	 */
 	public Coords setMul(CoordMatrix m, Coords v) {
 
+		if (rows == 4 && m.getRows() >= 4 && m.getColumns() == 4
+				&& v.rows >= 4) {
+			double[] c0 = m.vectors[0].val, c1 = m.vectors[1].val,
+					c2 = m.vectors[2].val, c3 = m.vectors[3].val;
+			double x = v.val[0], y = v.val[1], z = v.val[2], w = v.val[3];
+			modificationStamp++;
+			val[0] = c0[0] * x + c1[0] * y + c2[0] * z + c3[0] * w;
+			val[1] = c0[1] * x + c1[1] * y + c2[1] * z + c3[1] * w;
+			val[2] = c0[2] * x + c1[2] * y + c2[2] * z + c3[2] * w;
+			val[3] = c0[3] * x + c1[3] * y + c2[3] * z + c3[3] * w;
+			calcNorm = calcSqNorm = true;
+			return this;
+		}
+
 		for (int i = 1; i <= getLength(); i++) {
 
 			double r = 0;
@@ -3038,9 +3589,11 @@ public class Coords implements AnimatableValue<Coords> {
 	 */
 	public void set(double param1, double param2, MyPoint leftPoint,
 			MyPoint rightPoint) {
+		modificationStamp++;
 		val[0] = param2 * leftPoint.x + param1 * rightPoint.x;
 		val[1] = param2 * leftPoint.y + param1 * rightPoint.y;
 		val[2] = 1.0;
+		calcNorm = calcSqNorm = true;
 	}
 
 	@Override
@@ -3082,4 +3635,18 @@ public class Coords implements AnimatableValue<Coords> {
 		return true;
 	}
 
+	/**
+	 * scientific format with the factory that created it (final fields, so
+	 * it can be shared between threads)
+	 */
+	private static final class ScientificFormat {
+		final FormatFactory factory;
+		final ScientificFormatAdapter format;
+
+		ScientificFormat(FormatFactory factory,
+				ScientificFormatAdapter format) {
+			this.factory = factory;
+			this.format = format;
+		}
+	}
 }
\ No newline at end of file
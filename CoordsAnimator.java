@@ -0,0 +1,224 @@
+package org.geogebra.common.kernel.matrix;
+
+import org.geogebra.common.util.DoubleUtil;
+
+/**
+ * Animates many {@link Coords} (first 3 coords) at once: start and end
+ * values are stored in flat arrays, each tick interpolates all values in one
+ * loop, and convergence (current value equal to end value for
+ * {@link Coords#equalsForAnimation(Coords)}) is reported in a bitmap (bit
+ * i % 32 of converged[i / 32] for value i).
+ */
+public class CoordsAnimator {
+
+	private double[] start;
+	private double[] end;
+	private double[] current;
+	private int[] converged;
+	private int size;
+	private int convergedCount;
+
+	/**
+	 * @param capacity
+	 *            initial capacity
+	 */
+	public CoordsAnimator(int capacity) {
+		int c = Math.max(capacity, 1);
+		start = new double[3 * c];
+		end = new double[3 * c];
+		current = new double[3 * c];
+		converged = new int[(c + 31) >>> 5];
+	}
+
+	/**
+	 * @return number of animated values
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * remove all values
+	 */
+	public void clear() {
+		size = 0;
+		convergedCount = 0;
+		for (int i = 0; i < converged.length; i++) {
+			converged[i] = 0;
+		}
+	}
+
+	/**
+	 * add an animated value, current value is start
+	 *
+	 * @param from
+	 *            start value
+	 * @param to
+	 *            end value
+	 * @return index of the value
+	 */
+	public int add(Coords from, Coords to) {
+		ensureCapacity(size + 1);
+		int i = size++;
+		set(i, from, to);
+		return i;
+	}
+
+	/**
+	 * set start and end values, current value is start
+	 *
+	 * @param i
+	 *            index
+	 * @param from
+	 *            start value
+	 * @param to
+	 *            end value
+	 */
+	public void set(int i, Coords from, Coords to) {
+		int k = 3 * i;
+		for (int j = 0; j < 3; j++) {
+			start[k + j] = from.val[j];
+			current[k + j] = from.val[j];
+			end[k + j] = to.val[j];
+		}
+		updateConvergence(i, i + 1);
+	}
+
+	/**
+	 * set all current values to start + t * (end - start)
+	 *
+	 * @param t
+	 *            animation parameter (0 for start, 1 for end)
+	 * @return number of converged values
+	 */
+	public int tick(double t) {
+		double[] s = start, e = end, c = current;
+		for (int k = 0, len = 3 * size; k < len; k++) {
+			c[k] = s[k] + t * (e[k] - s[k]);
+		}
+		return updateConvergence(0, size);
+	}
+
+	/**
+	 * move all current values towards end values:
+	 * current += factor * (end - current)
+	 *
+	 * @param factor
+	 *            step factor (1 to jump to end)
+	 * @return number of converged values
+	 */
+	public int step(double factor) {
+		double[] e = end, c = current;
+		for (int k = 0, len = 3 * size; k < len; k++) {
+			c[k] += factor * (e[k] - c[k]);
+		}
+		return updateConvergence(0, size);
+	}
+
+	/**
+	 * @param i
+	 *            index
+	 * @return whether value i is converged
+	 */
+	public boolean isConverged(int i) {
+		return (converged[i >>> 5] & (1 << (i & 31))) != 0;
+	}
+
+	/**
+	 * @return whether all values are converged
+	 */
+	public boolean isConverged() {
+		return convergedCount == size;
+	}
+
+	/**
+	 * @return convergence bitmap (only first (size + 31) / 32 are used)
+	 */
+	public int[] getConverged() {
+		return converged;
+	}
+
+	/**
+	 * set current value i to target (as
+	 * {@link Coords#setAnimatableValue(Coords)})
+	 *
+	 * @param i
+	 *            index
+	 * @param target
+	 *            target
+	 */
+	public void apply(int i, Coords target) {
+		System.arraycopy(current, 3 * i, target.val, 0, 3);
+		target.setNormsToRecompute();
+		target.markModified();
+	}
+
+	/**
+	 * set current values to targets[0..size-1]
+	 *
+	 * @param targets
+	 *            targets
+	 */
+	public void apply(Coords[] targets) {
+		for (int i = 0; i < size; i++) {
+			apply(i, targets[i]);
+		}
+	}
+
+	/**
+	 * Same as {@link Coords#equalsForAnimation(Coords)}: current equals end
+	 * or -end (first 3 coords, kernel precision). Leading components where
+	 * both sides are equal to 0 are skipped; the first other component
+	 * decides the sign (at most one sign can match there), and the next
+	 * components must match with that sign.
+	 *
+	 * @return number of converged values
+	 */
+	private int updateConvergence(int from, int to) {
+		double[] c = current, e = end;
+		for (int i = from; i < to; i++) {
+			int k = 3 * i;
+			boolean same = true, opposite = true, signSet = false;
+			for (int j = k; j < k + 3; j++) {
+				if (!signSet && DoubleUtil.isEqual(c[j], 0)
+						&& DoubleUtil.isEqual(e[j], 0)) {
+					continue;
+				}
+				signSet = true;
+				same = same && DoubleUtil.isEqual(c[j], e[j]);
+				opposite = opposite && DoubleUtil.isEqual(c[j], -e[j]);
+			}
+			int bit = 1 << (i & 31);
+			boolean was = (converged[i >>> 5] & bit) != 0;
+			if (same || opposite) {
+				if (!was) {
+					converged[i >>> 5] |= bit;
+					convergedCount++;
+				}
+			} else if (was) {
+				converged[i >>> 5] &= ~bit;
+				convergedCount--;
+			}
+		}
+		return convergedCount;
+	}
+
+	private void ensureCapacity(int n) {
+		if (3 * n > start.length) {
+			int c = Math.max(n, 2 * start.length / 3);
+			start = copyOf(start, 3 * c);
+			end = copyOf(end, 3 * c);
+			current = copyOf(current, 3 * c);
+			int[] newConverged = new int[(c + 31) >>> 5];
+			System.arraycopy(converged, 0, newConverged, 0,
+					converged.length);
+			converged = newConverged;
+		}
+	}
+
+	private static double[] copyOf(double[] values, int length) {
+		double[] ret = new double[length];
+		System.arraycopy(values, 0, ret, 0, values.length);
+		return ret;
+	}
+}
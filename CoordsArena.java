@@ -0,0 +1,95 @@
+package org.geogebra.common.kernel.matrix;
+
+import java.util.ArrayList;
+
+/**
+ * Owner of the memory used by {@link CoordsStore} objects. Memory is taken as
+ * large primitive pages, so that millions of coords cost a few objects for
+ * the garbage collector, and is released all at once by {@link #reset()} or
+ * {@link #close()}:
+ *
+ * <pre>
+ * try (CoordsArena arena = new CoordsArena()) {
+ * 	CoordsStore points = arena.allocate(4);
+ * 	...
+ * }
+ * </pre>
+ *
+ * Stores allocated by the arena must not be used after it has been reset or
+ * closed.
+ */
+public class CoordsArena implements AutoCloseable {
+
+	/** number of coords in one page (power of 2) */
+	static final int PAGE_COORDS_SHIFT = 10;
+	/** number of coords in one page */
+	static final int PAGE_COORDS = 1 << PAGE_COORDS_SHIFT;
+
+	private final ArrayList<CoordsStore> stores = new ArrayList<>();
+	private final ArrayList<double[]> freePages = new ArrayList<>();
+	private boolean closed;
+
+	/**
+	 * @param dimension
+	 *            number of values for each coords
+	 * @return new empty store
+	 */
+	public CoordsStore allocate(int dimension) {
+		checkNotClosed();
+		CoordsStore store = new CoordsStore(this, dimension);
+		stores.add(store);
+		return store;
+	}
+
+	/**
+	 * @param length
+	 *            page length
+	 * @return page, recycled if possible
+	 */
+	double[] takePage(int length) {
+		checkNotClosed();
+		for (int i = freePages.size() - 1; i >= 0; i--) {
+			if (freePages.get(i).length == length) {
+				return freePages.remove(i);
+			}
+		}
+		return new double[length];
+	}
+
+	/**
+	 * release all stores; their pages are kept for next allocations
+	 */
+	public void reset() {
+		for (CoordsStore store : stores) {
+			store.release(freePages);
+		}
+		stores.clear();
+	}
+
+	/**
+	 * release all stores and all pages
+	 */
+	@Override
+	public void close() {
+		reset();
+		freePages.clear();
+		closed = true;
+	}
+
+	/**
+	 * @return number of values (doubles) currently held by stores
+	 */
+	public long getUsedValues() {
+		long ret = 0;
+		for (CoordsStore store : stores) {
+			ret += store.getAllocatedValues();
+		}
+		return ret;
+	}
+
+	private void checkNotClosed() {
+		if (closed) {
+			throw new IllegalStateException("arena is closed");
+		}
+	}
+}
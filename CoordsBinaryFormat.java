@@ -0,0 +1,349 @@
+package org.geogebra.common.kernel.matrix;
+
+/**
+ * Versioned binary format for arrays of {@link Coords} or
+ * {@link CoordMatrix}, e.g. for geometry caches.
+ *
+ * Layout (all little-endian): header of {@link #HEADER_LENGTH} bytes
+ * <ul>
+ * <li>magic "GGCM"</li>
+ * <li>version (int)</li>
+ * <li>rows (int): length of each coords, or rows of each matrix</li>
+ * <li>columns (int): 1 for coords, columns of each matrix</li>
+ * <li>count (int): number of coords / matrices</li>
+ * <li>reserved (int)</li>
+ * </ul>
+ * then count * rows * columns doubles (matrices column by column). The
+ * header length is a multiple of 8, so values are aligned when the data
+ * starts on an aligned offset (e.g. in a mapped file).
+ *
+ * Values can be read one by one from the bytes (random access, no copy) or
+ * all at once.
+ */
+public final class CoordsBinaryFormat {
+
+	/** current version */
+	public static final int VERSION = 1;
+	/** header length in bytes */
+	public static final int HEADER_LENGTH = 24;
+
+	private static final int MAGIC = 'G' | 'G' << 8 | 'C' << 16 | 'M' << 24;
+
+	private CoordsBinaryFormat() {
+		// utility class
+	}
+
+	/**
+	 * Header of encoded data
+	 */
+	public static class Header {
+		private final int version;
+		private final int rows;
+		private final int columns;
+		private final int count;
+		private final int dataOffset;
+
+		Header(int version, int rows, int columns, int count,
+				int dataOffset) {
+			this.version = version;
+			this.rows = rows;
+			this.columns = columns;
+			this.count = count;
+			this.dataOffset = dataOffset;
+		}
+
+		/**
+		 * @return format version
+		 */
+		public int getVersion() {
+			return version;
+		}
+
+		/**
+		 * @return length of each coords, or rows of each matrix
+		 */
+		public int getRows() {
+			return rows;
+		}
+
+		/**
+		 * @return 1 for coords, columns of each matrix
+		 */
+		public int getColumns() {
+			return columns;
+		}
+
+		/**
+		 * @return number of coords / matrices
+		 */
+		public int getCount() {
+			return count;
+		}
+
+		/**
+		 * @return offset of first value in bytes
+		 */
+		public int getDataOffset() {
+			return dataOffset;
+		}
+
+		/**
+		 * @param i
+		 *            coords / matrix index
+		 * @param row
+		 *            row (0 for first)
+		 * @param column
+		 *            column (0 for first, always 0 for coords)
+		 * @return offset of this value in bytes
+		 */
+		public int getOffset(int i, int row, int column) {
+			return dataOffset + 8 * ((i * columns + column) * rows + row);
+		}
+	}
+
+	/**
+	 * @param count
+	 *            number of coords / matrices
+	 * @param rows
+	 *            length of each coords, or rows of each matrix
+	 * @param columns
+	 *            1 for coords, columns of each matrix
+	 * @return length in bytes of encoded data
+	 */
+	public static int length(int count, int rows, int columns) {
+		return HEADER_LENGTH + 8 * count * rows * columns;
+	}
+
+	/**
+	 * write coords[from..to-1] (all with same length)
+	 *
+	 * @param coords
+	 *            coords
+	 * @param from
+	 *            first index
+	 * @param to
+	 *            last index + 1
+	 * @param out
+	 *            output bytes (length at least offset + length(...))
+	 * @param offset
+	 *            offset in out
+	 * @return offset after last byte written
+	 */
+	public static int write(Coords[] coords, int from, int to, byte[] out,
+			int offset) {
+		int rows = to > from ? coords[from].getLength() : 0;
+		int k = writeHeader(out, offset, rows, 1, to - from);
+		for (int i = from; i < to; i++) {
+			double[] v = coords[i].val;
+			for (int r = 0; r < rows; r++) {
+				k = writeDouble(out, k, v[r]);
+			}
+		}
+		return k;
+	}
+
+	/**
+	 * write matrices[from..to-1] (all with same size)
+	 *
+	 * @param matrices
+	 *            matrices
+	 * @param from
+	 *            first index
+	 * @param to
+	 *            last index + 1
+	 * @param out
+	 *            output bytes (length at least offset + length(...))
+	 * @param offset
+	 *            offset in out
+	 * @return offset after last byte written
+	 */
+	public static int write(CoordMatrix[] matrices, int from, int to,
+			byte[] out, int offset) {
+		int rows = to > from ? matrices[from].getRows() : 0;
+		int columns = to > from ? matrices[from].getColumns() : 1;
+		int k = writeHeader(out, offset, rows, columns, to - from);
+		for (int i = from; i < to; i++) {
+			for (int c = 0; c < columns; c++) {
+				double[] v = matrices[i].vectors[c].val;
+				for (int r = 0; r < rows; r++) {
+					k = writeDouble(out, k, v[r]);
+				}
+			}
+		}
+		return k;
+	}
+
+	/**
+	 * write n coords stored as {x0, y0, ..., x1, ...}
+	 *
+	 * @param values
+	 *            values
+	 * @param n
+	 *            number of coords
+	 * @param dimension
+	 *            length of each coords
+	 * @param out
+	 *            output bytes (length at least offset + length(...))
+	 * @param offset
+	 *            offset in out
+	 * @return offset after last byte written
+	 */
+	public static int write(double[] values, int n, int dimension,
+			byte[] out, int offset) {
+		int k = writeHeader(out, offset, dimension, 1, n);
+		for (int i = 0, len = n * dimension; i < len; i++) {
+			k = writeDouble(out, k, values[i]);
+		}
+		return k;
+	}
+
+	/**
+	 * @param in
+	 *            encoded bytes
+	 * @param offset
+	 *            offset of encoded data
+	 * @return header
+	 * @throws IllegalArgumentException
+	 *             if data is not in this format, is in a newer version, or
+	 *             is truncated
+	 */
+	public static Header readHeader(byte[] in, int offset) {
+		if (in.length - offset < HEADER_LENGTH
+				|| readInt(in, offset) != MAGIC) {
+			throw new IllegalArgumentException("not a coords binary format");
+		}
+		int version = readInt(in, offset + 4);
+		if (version < 1 || version > VERSION) {
+			throw new IllegalArgumentException(
+					"unsupported coords binary format version: " + version);
+		}
+		int rows = readInt(in, offset + 8);
+		int columns = readInt(in, offset + 12);
+		int count = readInt(in, offset + 16);
+		if (rows < 0 || columns < 0 || count < 0) {
+			throw new IllegalArgumentException("corrupted coords header");
+		}
+		// long, and divide instead of multiplying by columns: corrupted
+		// sizes may overflow
+		long values = (long) count * rows;
+		long available = (in.length - offset - HEADER_LENGTH) / 8;
+		if (values > 0 && columns > available / values) {
+			throw new IllegalArgumentException("truncated coords data");
+		}
+		return new Header(version, rows, columns, count,
+				offset + HEADER_LENGTH);
+	}
+
+	/**
+	 * @param in
+	 *            encoded bytes
+	 * @param header
+	 *            header
+	 * @param i
+	 *            coords index
+	 * @param ret
+	 *            output: coords i (length at least rows)
+	 * @return ret
+	 */
+	public static Coords read(byte[] in, Header header, int i, Coords ret) {
+		int k = header.getOffset(i, 0, 0);
+		for (int r = 0; r < header.rows; r++) {
+			ret.val[r] = readDouble(in, k);
+			k += 8;
+		}
+		ret.setNormsToRecompute();
+		ret.markModified();
+		return ret;
+	}
+
+	/**
+	 * @param in
+	 *            encoded bytes
+	 * @param header
+	 *            header
+	 * @param i
+	 *            matrix index
+	 * @param ret
+	 *            output: matrix i (same size)
+	 * @return ret
+	 */
+	public static CoordMatrix read(byte[] in, Header header, int i,
+			CoordMatrix ret) {
+		int k = header.getOffset(i, 0, 0);
+		for (int c = 0; c < header.columns; c++) {
+			Coords column = ret.vectors[c];
+			for (int r = 0; r < header.rows; r++) {
+				column.val[r] = readDouble(in, k);
+				k += 8;
+			}
+			column.setNormsToRecompute();
+			column.markModified();
+		}
+		return ret;
+	}
+
+	/**
+	 * read all values
+	 *
+	 * @param in
+	 *            encoded bytes
+	 * @param header
+	 *            header
+	 * @param out
+	 *            output values (count * rows * columns)
+	 * @param outOffset
+	 *            offset in out
+	 */
+	public static void readAll(byte[] in, Header header, double[] out,
+			int outOffset) {
+		int k = header.dataOffset;
+		int len = header.count * header.rows * header.columns;
+		for (int i = 0; i < len; i++) {
+			out[outOffset + i] = readDouble(in, k);
+			k += 8;
+		}
+	}
+
+	/**
+	 * @param in
+	 *            bytes
+	 * @param offset
+	 *            offset (see {@link Header#getOffset(int, int, int)})
+	 * @return little-endian double at offset
+	 */
+	public static double readDouble(byte[] in, int offset) {
+		long bits = (readInt(in, offset) & 0xFFFFFFFFL)
+				| (long) readInt(in, offset + 4) << 32;
+		return Double.longBitsToDouble(bits);
+	}
+
+	private static int writeHeader(byte[] out, int offset, int rows,
+			int columns, int count) {
+		writeInt(out, offset, MAGIC);
+		writeInt(out, offset + 4, VERSION);
+		writeInt(out, offset + 8, rows);
+		writeInt(out, offset + 12, columns);
+		writeInt(out, offset + 16, count);
+		writeInt(out, offset + 20, 0);
+		return offset + HEADER_LENGTH;
+	}
+
+	private static int writeDouble(byte[] out, int offset, double value) {
+		long bits = Double.doubleToLongBits(value);
+		writeInt(out, offset, (int) bits);
+		writeInt(out, offset + 4, (int) (bits >>> 32));
+		return offset + 8;
+	}
+
+	private static void writeInt(byte[] out, int offset, int value) {
+		out[offset] = (byte) value;
+		out[offset + 1] = (byte) (value >>> 8);
+		out[offset + 2] = (byte) (value >>> 16);
+		out[offset + 3] = (byte) (value >>> 24);
+	}
+
+	private static int readInt(byte[] in, int offset) {
+		return (in[offset] & 0xFF) | (in[offset + 1] & 0xFF) << 8
+				| (in[offset + 2] & 0xFF) << 16 | (in[offset + 3] & 0xFF) << 24;
+	}
+}
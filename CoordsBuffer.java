@@ -0,0 +1,427 @@
+package org.geogebra.common.kernel.matrix;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of (x, y, z, w) coords, stored as one primitive array per
+ * coordinate (struct of arrays) instead of one {@link Coords} object per
+ * point. Provides bulk versions of the main {@link Coords} operations.
+ *
+ * Coords shorter than 4 are stored with missing values set to 0.
+ *
+ */
+public class CoordsBuffer {
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	/** x values */
+	double[] x;
+	/** y values */
+	double[] y;
+	/** z values */
+	double[] z;
+	/** w values */
+	double[] w;
+
+	private int size;
+
+	/**
+	 * creates an empty buffer
+	 */
+	public CoordsBuffer() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * creates an empty buffer
+	 *
+	 * @param capacity
+	 *            initial capacity
+	 */
+	public CoordsBuffer(int capacity) {
+		int c = Math.max(capacity, 1);
+		x = new double[c];
+		y = new double[c];
+		z = new double[c];
+		w = new double[c];
+	}
+
+	/**
+	 * @return number of coords in this buffer
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return current capacity
+	 */
+	public int capacity() {
+		return x.length;
+	}
+
+	/**
+	 * remove all coords (keeps memory)
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * make sure the buffer can hold at least capacity coords without growing
+	 *
+	 * @param capacity
+	 *            minimal capacity
+	 */
+	public void ensureCapacity(int capacity) {
+		if (capacity <= x.length) {
+			return;
+		}
+		int c = Math.max(capacity, x.length + (x.length >> 1));
+		x = Arrays.copyOf(x, c);
+		y = Arrays.copyOf(y, c);
+		z = Arrays.copyOf(z, c);
+		w = Arrays.copyOf(w, c);
+	}
+
+	/**
+	 * set the number of coords; new coords are set to 0
+	 *
+	 * @param newSize
+	 *            new size
+	 */
+	public void setSize(int newSize) {
+		ensureCapacity(newSize);
+		if (newSize > size) {
+			Arrays.fill(x, size, newSize, 0);
+			Arrays.fill(y, size, newSize, 0);
+			Arrays.fill(z, size, newSize, 0);
+			Arrays.fill(w, size, newSize, 0);
+		}
+		size = newSize;
+	}
+
+	/**
+	 * append (x,y,z,w) values
+	 *
+	 * @param x0
+	 *            x
+	 * @param y0
+	 *            y
+	 * @param z0
+	 *            z
+	 * @param w0
+	 *            w
+	 * @return index of added coords
+	 */
+	public int add(double x0, double y0, double z0, double w0) {
+		ensureCapacity(size + 1);
+		x[size] = x0;
+		y[size] = y0;
+		z[size] = z0;
+		w[size] = w0;
+		return size++;
+	}
+
+	/**
+	 * append values of v
+	 *
+	 * @param v
+	 *            coords
+	 * @return index of added coords
+	 */
+	public int add(Coords v) {
+		ensureCapacity(size + 1);
+		set(size, v);
+		return size++;
+	}
+
+	/**
+	 * set values at index i
+	 *
+	 * @param i
+	 *            index
+	 * @param x0
+	 *            x
+	 * @param y0
+	 *            y
+	 * @param z0
+	 *            z
+	 * @param w0
+	 *            w
+	 */
+	public void set(int i, double x0, double y0, double z0, double w0) {
+		x[i] = x0;
+		y[i] = y0;
+		z[i] = z0;
+		w[i] = w0;
+	}
+
+	/**
+	 * set values at index i to v (missing values are set to 0)
+	 *
+	 * @param i
+	 *            index
+	 * @param v
+	 *            coords
+	 */
+	public void set(int i, Coords v) {
+		double[] val = v.val;
+		int len = v.getLength();
+		x[i] = len > 0 ? val[0] : 0;
+		y[i] = len > 1 ? val[1] : 0;
+		z[i] = len > 2 ? val[2] : 0;
+		w[i] = len > 3 ? val[3] : 0;
+	}
+
+	/**
+	 * copy values at index i into ret (only ret.getLength() first values)
+	 *
+	 * @param i
+	 *            index
+	 * @param ret
+	 *            output coords
+	 */
+	public void get(int i, Coords ret) {
+		switch (Math.min(ret.getLength(), 4)) {
+		case 4:
+			ret.setW(w[i]);
+			// fall through
+		case 3:
+			ret.setZ(z[i]);
+			// fall through
+		case 2:
+			ret.setY(y[i]);
+			// fall through
+		case 1:
+			ret.setX(x[i]);
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * @param i
+	 *            index
+	 * @return x value at index i
+	 */
+	public double getX(int i) {
+		return x[i];
+	}
+
+	/**
+	 * @param i
+	 *            index
+	 * @return y value at index i
+	 */
+	public double getY(int i) {
+		return y[i];
+	}
+
+	/**
+	 * @param i
+	 *            index
+	 * @return z value at index i
+	 */
+	public double getZ(int i) {
+		return z[i];
+	}
+
+	/**
+	 * @param i
+	 *            index
+	 * @return w value at index i
+	 */
+	public double getW(int i) {
+		return w[i];
+	}
+
+	/**
+	 * set this = m * v for each coords of v. Attempt m to be 4x4.
+	 *
+	 * @param m
+	 *            matrix
+	 * @param v
+	 *            coords (may be this)
+	 * @return this
+	 */
+	public CoordsBuffer setMul(CoordMatrix m, CoordsBuffer v) {
+		int n = v.size;
+		setSize(n);
+		CoordsKernels.mul(m, v.x, v.y, v.z, v.w, x, y, z, w, n);
+		return this;
+	}
+
+	/**
+	 * dot product (x, y, z only) of each coords with v
+	 *
+	 * @param v
+	 *            vector
+	 * @param ret
+	 *            output values (length at least size())
+	 */
+	public void dotproduct3(Coords v, double[] ret) {
+		CoordsKernels.dotproduct3(x, y, z, v.getX(), v.getY(), v.getZ(), ret,
+				size);
+	}
+
+	/**
+	 * square norm of each coords
+	 *
+	 * @param ret
+	 *            output values (length at least size())
+	 */
+	public void squareNorm(double[] ret) {
+		CoordsKernels.squareNorm(x, y, z, w, ret, size);
+	}
+
+	/**
+	 * multiply all values by v
+	 *
+	 * @param v
+	 *            factor
+	 * @return this
+	 */
+	public CoordsBuffer mulInside(double v) {
+		CoordsKernels.mulInside(x, v, size);
+		CoordsKernels.mulInside(y, v, size);
+		CoordsKernels.mulInside(z, v, size);
+		CoordsKernels.mulInside(w, v, size);
+		return this;
+	}
+
+	/**
+	 * set this to v1 + v2. If sizes differ, only the first min(v1.size(),
+	 * v2.size()) coords are added.
+	 *
+	 * @param v1
+	 *            coords
+	 * @param v2
+	 *            coords
+	 * @return this
+	 */
+	public CoordsBuffer setAdd(CoordsBuffer v1, CoordsBuffer v2) {
+		setAdd3(v1, v2);
+		CoordsKernels.add(v1.w, v2.w, w, size);
+		return this;
+	}
+
+	/**
+	 * set this to v1 + v2 (for 3 first coords), w values are kept. If sizes
+	 * differ, only the first min(v1.size(), v2.size()) coords are added.
+	 *
+	 * @param v1
+	 *            coords
+	 * @param v2
+	 *            coords
+	 * @return this
+	 */
+	public CoordsBuffer setAdd3(CoordsBuffer v1, CoordsBuffer v2) {
+		int n = Math.min(v1.size, v2.size);
+		setSize(n);
+		CoordsKernels.add(v1.x, v2.x, x, n);
+		CoordsKernels.add(v1.y, v2.y, y, n);
+		CoordsKernels.add(v1.z, v2.z, z, n);
+		return this;
+	}
+
+	/**
+	 * normalize each coords (all 4 values, as {@link Coords#normalize()} for
+	 * length 4 coords)
+	 *
+	 * @return this
+	 */
+	public CoordsBuffer normalize() {
+		for (int i = 0; i < size; i++) {
+			double normInv = 1 / Math.sqrt(
+					x[i] * x[i] + y[i] * y[i] + z[i] * z[i] + w[i] * w[i]);
+			x[i] *= normInv;
+			y[i] *= normInv;
+			z[i] *= normInv;
+			w[i] *= normInv;
+		}
+		return this;
+	}
+
+	/**
+	 * set ret to inhomogeneous coords of each coords: (x/w, y/w, z/w, 1)
+	 *
+	 * @param ret
+	 *            output buffer (may be this)
+	 * @return ret
+	 */
+	public CoordsBuffer getInhomCoords(CoordsBuffer ret) {
+		int n = size;
+		ret.setSize(n);
+		for (int i = 0; i < n; i++) {
+			double wdiv = 1 / w[i];
+			ret.x[i] = x[i] * wdiv;
+			ret.y[i] = y[i] * wdiv;
+			ret.z[i] = z[i] * wdiv;
+			ret.w[i] = 1;
+		}
+		return ret;
+	}
+
+	/**
+	 * @return new cursor on this buffer
+	 */
+	public Cursor cursor() {
+		return new Cursor();
+	}
+
+	/**
+	 * Exposes one element of the buffer as a {@link Coords} (length 4), so
+	 * that existing {@link Coords} methods can be used on it. The coords is a
+	 * copy of the element, not a live view: changes to it are only written
+	 * back with {@link #store()}, and changes to the buffer are only seen
+	 * after {@link #moveTo(int)}.
+	 */
+	public class Cursor {
+
+		private final Coords coords = new Coords(4);
+		private int index = -1;
+
+		/**
+		 * use {@link CoordsBuffer#cursor()}
+		 */
+		Cursor() {
+			// only created by buffer
+		}
+
+		/**
+		 * load element at index
+		 *
+		 * @param i
+		 *            index
+		 * @return coords of element i
+		 */
+		public Coords moveTo(int i) {
+			index = i;
+			coords.set(x[i], y[i], z[i], w[i]);
+			return coords;
+		}
+
+		/**
+		 * @return coords of current element
+		 */
+		public Coords getCoords() {
+			return coords;
+		}
+
+		/**
+		 * @return current index
+		 */
+		public int getIndex() {
+			return index;
+		}
+
+		/**
+		 * write current coords values back into the buffer
+		 */
+		public void store() {
+			set(index, coords);
+		}
+	}
+}
@@ -0,0 +1,290 @@
+package org.geogebra.common.kernel.matrix;
+
+import org.geogebra.common.kernel.Kernel;
+
+/**
+ * Compact encoding of sequences of points (e.g. sampled curves) in a byte
+ * array: each value is quantized (step = 2 * tolerance, so decoded values
+ * are within tolerance from original ones, up to rounding), encoded as
+ * difference to the previous point's value, then zigzag / varint packed.
+ *
+ * Values that can't be quantized (undefined, infinite or too large) are
+ * stored as raw doubles. Encoded data starts with a header (dimension and
+ * quantization step), so the decoder needs no configuration.
+ */
+public final class CoordsCodec {
+
+	/** max quantized value (in absolute value) */
+	private static final double MAX_QUANTIZED = 4503599627370496.0; // 2^52
+	private static final int RAW = 1;
+
+	private CoordsCodec() {
+		// utility class
+	}
+
+	/**
+	 * Streaming encoder
+	 */
+	public static class Encoder {
+
+		private final int dimension;
+		private final double step;
+		private final long[] previous;
+		private byte[] bytes = new byte[256];
+		private int size;
+		private int count;
+
+		/**
+		 * encoder with kernel standard precision as tolerance
+		 *
+		 * @param dimension
+		 *            number of values of each point
+		 */
+		public Encoder(int dimension) {
+			this(dimension, Kernel.STANDARD_PRECISION);
+		}
+
+		/**
+		 * @param dimension
+		 *            number of values of each point
+		 * @param tolerance
+		 *            max error for decoded values (must be positive)
+		 */
+		public Encoder(int dimension, double tolerance) {
+			this.dimension = dimension;
+			this.step = 2 * tolerance;
+			previous = new long[dimension];
+			writeVarint(dimension);
+			writeRaw(step);
+		}
+
+		/**
+		 * @param v
+		 *            point (length at least dimension)
+		 * @return this
+		 */
+		public Encoder add(Coords v) {
+			return add(v.val, 0);
+		}
+
+		/**
+		 * @param values
+		 *            values
+		 * @param offset
+		 *            offset of the point in values
+		 * @return this
+		 */
+		public Encoder add(double[] values, int offset) {
+			ensureCapacity(dimension * 10);
+			for (int k = 0; k < dimension; k++) {
+				double q = values[offset + k] / step;
+				// false also for NaN
+				if (q > -MAX_QUANTIZED && q < MAX_QUANTIZED) {
+					long quantized = Math.round(q);
+					long delta = quantized - previous[k];
+					previous[k] = quantized;
+					// zigzag, then shift to leave last bit for RAW flag
+					writeVarint(((delta << 1) ^ (delta >> 63)) << 1);
+				} else {
+					writeVarint(RAW);
+					writeRaw(values[offset + k]);
+				}
+			}
+			count++;
+			return this;
+		}
+
+		/**
+		 * @param values
+		 *            points {x0, y0, ..., x1, ...}
+		 * @param n
+		 *            number of points
+		 * @return this
+		 */
+		public Encoder addAll(double[] values, int n) {
+			for (int i = 0; i < n; i++) {
+				add(values, i * dimension);
+			}
+			return this;
+		}
+
+		/**
+		 * @return number of points encoded
+		 */
+		public int getCount() {
+			return count;
+		}
+
+		/**
+		 * @return number of bytes used
+		 */
+		public int size() {
+			return size;
+		}
+
+		/**
+		 * @return encoded bytes (only first size() are used)
+		 */
+		public byte[] getBytes() {
+			return bytes;
+		}
+
+		/**
+		 * @return copy of encoded bytes
+		 */
+		public byte[] toByteArray() {
+			byte[] ret = new byte[size];
+			System.arraycopy(bytes, 0, ret, 0, size);
+			return ret;
+		}
+
+		private void writeVarint(long value) {
+			ensureCapacity(10);
+			long v = value;
+			while ((v & ~0x7FL) != 0) {
+				bytes[size++] = (byte) ((v & 0x7F) | 0x80);
+				v >>>= 7;
+			}
+			bytes[size++] = (byte) v;
+		}
+
+		private void writeRaw(double value) {
+			ensureCapacity(8);
+			long bits = Double.doubleToLongBits(value);
+			for (int i = 0; i < 8; i++) {
+				bytes[size++] = (byte) (bits >>> (8 * i));
+			}
+		}
+
+		private void ensureCapacity(int more) {
+			if (size + more > bytes.length) {
+				byte[] newBytes = new byte[Math.max(size + more,
+						bytes.length * 2)];
+				System.arraycopy(bytes, 0, newBytes, 0, size);
+				bytes = newBytes;
+			}
+		}
+	}
+
+	/**
+	 * Streaming decoder
+	 */
+	public static class Decoder {
+
+		private final byte[] bytes;
+		private final int end;
+		private int position;
+		private final int dimension;
+		private final double step;
+		private final long[] previous;
+
+		/**
+		 * @param bytes
+		 *            encoded bytes
+		 * @param offset
+		 *            offset of encoded data
+		 * @param length
+		 *            length of encoded data
+		 */
+		public Decoder(byte[] bytes, int offset, int length) {
+			this.bytes = bytes;
+			this.position = offset;
+			this.end = offset + length;
+			dimension = (int) readVarint();
+			step = readRaw();
+			previous = new long[dimension];
+		}
+
+		/**
+		 * @param bytes
+		 *            encoded bytes
+		 */
+		public Decoder(byte[] bytes) {
+			this(bytes, 0, bytes.length);
+		}
+
+		/**
+		 * @return number of values of each point
+		 */
+		public int getDimension() {
+			return dimension;
+		}
+
+		/**
+		 * @return whether there are more points
+		 */
+		public boolean hasNext() {
+			return position < end;
+		}
+
+		/**
+		 * @param ret
+		 *            output: next point (length at least dimension)
+		 * @return ret
+		 */
+		public Coords next(Coords ret) {
+			next(ret.val, 0);
+			ret.setNormsToRecompute();
+			ret.markModified();
+			return ret;
+		}
+
+		/**
+		 * @param out
+		 *            output values
+		 * @param offset
+		 *            offset of the point in out
+		 */
+		public void next(double[] out, int offset) {
+			for (int k = 0; k < dimension; k++) {
+				long v = readVarint();
+				if ((v & RAW) != 0) {
+					out[offset + k] = readRaw();
+				} else {
+					long zigzag = v >>> 1;
+					long delta = (zigzag >>> 1) ^ -(zigzag & 1);
+					previous[k] += delta;
+					out[offset + k] = previous[k] * step;
+				}
+			}
+		}
+
+		/**
+		 * decode next points
+		 *
+		 * @param out
+		 *            output: points {x0, y0, ..., x1, ...}
+		 * @param maxPoints
+		 *            max number of points decoded
+		 * @return number of points decoded
+		 */
+		public int nextPoints(double[] out, int maxPoints) {
+			int n = 0;
+			while (n < maxPoints && hasNext()) {
+				next(out, n * dimension);
+				n++;
+			}
+			return n;
+		}
+
+		private long readVarint() {
+			long ret = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = bytes[position++];
+				ret |= (long) (b & 0x7F) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+			return ret;
+		}
+
+		private double readRaw() {
+			long bits = 0;
+			for (int i = 0; i < 8; i++) {
+				bits |= (long) (bytes[position++] & 0xFF) << (8 * i);
+			}
+			return Double.longBitsToDouble(bits);
+		}
+	}
+}
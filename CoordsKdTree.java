@@ -0,0 +1,612 @@
+package org.geogebra.common.kernel.matrix;
+
+/**
+ * KD-tree over 2D or 3D points, for nearest point queries (e.g. closest
+ * point of a locus to the mouse) in O(log n) instead of a linear scan with
+ * {@link Coords#distance(Coords)}.
+ *
+ * The tree is implicit (balanced, stored as a permutation of point indices,
+ * median of each range is the node), so there are no node objects. Points
+ * added after the last build are scanned linearly until the tree is rebuilt
+ * (automatically when there are too many of them); removed points are only
+ * flagged.
+ *
+ * Points are identified by their index (order of addition). Coords are read
+ * from their first dimension values (use inhomogeneous coords). Points must
+ * have finite coords.
+ *
+ * Queries keep their state in the tree (to avoid allocations), so a tree
+ * must not be queried from several threads at once.
+ */
+public class CoordsKdTree {
+
+	private static final int MIN_PENDING_FOR_REBUILD = 32;
+
+	private final int dimension;
+	private double[] values;
+	private boolean[] removed;
+	/** number of points (including removed ones) */
+	private int count;
+	private int removedCount;
+	/** removedCount at last rebuild */
+	private int removedAtRebuild;
+	/** points indexed in the tree are order[0..built-1] */
+	private int[] order = new int[0];
+	private int built;
+	/** points with index &gt;= pendingStart are not in the tree */
+	private int pendingStart;
+	/** bounding box of indexed points */
+	private final double[] boxMin = new double[3];
+	private final double[] boxMax = new double[3];
+
+	// query state
+	private final double[] query = new double[3];
+	private final double[] lineDirection = new double[3];
+	private final double[] queryBoxMin = new double[3];
+	private final double[] queryBoxMax = new double[3];
+	private double lineSqNorm;
+	private int[] heapIndex = new int[1];
+	private double[] heapSqDist = new double[1];
+	private int heapSize;
+	private int heapCapacity;
+	private double radiusSq;
+	private int[] found;
+	private int foundCount;
+
+	/**
+	 * @param dimension
+	 *            2 or 3
+	 */
+	public CoordsKdTree(int dimension) {
+		this.dimension = dimension;
+		values = new double[16 * dimension];
+		removed = new boolean[16];
+	}
+
+	/**
+	 * @param points
+	 *            points
+	 * @param dimension
+	 *            2 or 3
+	 * @return tree with all points (index of each point is its index in
+	 *         points)
+	 */
+	public static CoordsKdTree create(Coords[] points, int dimension) {
+		CoordsKdTree tree = new CoordsKdTree(dimension);
+		tree.ensureCapacity(points.length);
+		for (Coords p : points) {
+			tree.addNoRebuild(p.val, 0);
+		}
+		tree.rebuild();
+		return tree;
+	}
+
+	/**
+	 * @param points
+	 *            points {x0, y0, (z0,) x1, ...}
+	 * @param n
+	 *            number of points
+	 * @param dimension
+	 *            2 or 3
+	 * @return tree with all points
+	 */
+	public static CoordsKdTree create(double[] points, int n, int dimension) {
+		CoordsKdTree tree = new CoordsKdTree(dimension);
+		tree.ensureCapacity(n);
+		System.arraycopy(points, 0, tree.values, 0, n * dimension);
+		tree.count = n;
+		tree.rebuild();
+		return tree;
+	}
+
+	/**
+	 * @return number of points (not removed)
+	 */
+	public int size() {
+		return count - removedCount;
+	}
+
+	/**
+	 * @return 2 or 3
+	 */
+	public int getDimension() {
+		return dimension;
+	}
+
+	/**
+	 * @param i
+	 *            point index
+	 * @param k
+	 *            coord index (0 for x)
+	 * @return coord value
+	 */
+	public double get(int i, int k) {
+		return values[i * dimension + k];
+	}
+
+	/**
+	 * @param i
+	 *            point index
+	 * @return whether point has been removed
+	 */
+	public boolean isRemoved(int i) {
+		return removed[i];
+	}
+
+	/**
+	 * add a point
+	 *
+	 * @param p
+	 *            point
+	 * @return point index
+	 */
+	public int add(Coords p) {
+		return add(p.val, 0);
+	}
+
+	/**
+	 * add a point
+	 *
+	 * @param p
+	 *            values
+	 * @param offset
+	 *            offset of the point in p
+	 * @return point index
+	 */
+	public int add(double[] p, int offset) {
+		ensureCapacity(count + 1);
+		int i = addNoRebuild(p, offset);
+		int pending = count - pendingStart;
+		if (pending >= MIN_PENDING_FOR_REBUILD && pending * 4 > built) {
+			rebuild();
+		}
+		return i;
+	}
+
+	/**
+	 * remove a point (its index is not reused)
+	 *
+	 * @param i
+	 *            point index
+	 */
+	public void remove(int i) {
+		if (removed[i]) {
+			return;
+		}
+		removed[i] = true;
+		removedCount++;
+		int removedSinceRebuild = removedCount - removedAtRebuild;
+		if (removedSinceRebuild >= MIN_PENDING_FOR_REBUILD
+				&& removedSinceRebuild * 2 > built) {
+			rebuild();
+		}
+	}
+
+	/**
+	 * rebuild the tree with all points not removed
+	 */
+	public void rebuild() {
+		if (order.length < count) {
+			int[] newOrder = new int[values.length / dimension];
+			System.arraycopy(order, 0, newOrder, 0, built);
+			order = newOrder;
+		}
+		// only indexed and pending points: points removed before last
+		// rebuild are not scanned again
+		int previous = built;
+		built = 0;
+		for (int j = 0; j < previous; j++) {
+			if (!removed[order[j]]) {
+				order[built++] = order[j];
+			}
+		}
+		for (int i = pendingStart; i < count; i++) {
+			if (!removed[i]) {
+				order[built++] = i;
+			}
+		}
+		for (int k = 0; k < dimension; k++) {
+			boxMin[k] = Double.POSITIVE_INFINITY;
+			boxMax[k] = Double.NEGATIVE_INFINITY;
+		}
+		for (int j = 0; j < built; j++) {
+			int start = order[j] * dimension;
+			for (int k = 0; k < dimension; k++) {
+				double v = values[start + k];
+				boxMin[k] = Math.min(boxMin[k], v);
+				boxMax[k] = Math.max(boxMax[k], v);
+			}
+		}
+		build(0, built, 0);
+		pendingStart = count;
+		removedAtRebuild = removedCount;
+	}
+
+	/**
+	 * @param p
+	 *            point
+	 * @return index of nearest point, -1 if none
+	 */
+	public int nearest(Coords p) {
+		return kNearest(p.val, 0, 1, null) == 0 ? -1 : heapIndex[0];
+	}
+
+	/**
+	 * @param p
+	 *            point
+	 * @param k
+	 *            number of points wanted
+	 * @param result
+	 *            output: indices of the k nearest points, nearest first
+	 * @return number of points found (k, or less if less points)
+	 */
+	public int kNearest(Coords p, int k, int[] result) {
+		return kNearest(p.val, 0, k, result);
+	}
+
+	/**
+	 * @param p
+	 *            values
+	 * @param offset
+	 *            offset of the point in p
+	 * @param k
+	 *            number of points wanted
+	 * @param result
+	 *            output: indices of the k nearest points, nearest first; may
+	 *            be null
+	 * @return number of points found (k, or less if less points)
+	 */
+	public int kNearest(double[] p, int offset, int k, int[] result) {
+		setQuery(p, offset);
+		if (heapIndex.length < k) {
+			heapIndex = new int[k];
+			heapSqDist = new double[k];
+		}
+		heapCapacity = k;
+		heapSize = 0;
+		if (k > 0) {
+			searchNearest(0, built, 0);
+			for (int i = pendingStart; i < count; i++) {
+				offerNearest(i);
+			}
+		}
+		int n = heapSize;
+		// sort heap: nearest first
+		while (heapSize > 1) {
+			heapSize--;
+			swap(0, heapSize);
+			siftDown(0);
+		}
+		if (result != null) {
+			System.arraycopy(heapIndex, 0, result, 0, n);
+		}
+		return n;
+	}
+
+	/**
+	 * @param p
+	 *            point
+	 * @param radius
+	 *            radius
+	 * @param result
+	 *            output: indices of points at distance &lt;= radius (only
+	 *            the first result.length ones are stored)
+	 * @return number of points found (may be more than result.length)
+	 */
+	public int inRadius(Coords p, double radius, int[] result) {
+		setQuery(p.val, 0);
+		radiusSq = radius * radius;
+		found = result;
+		foundCount = 0;
+		searchRadius(0, built, 0);
+		for (int i = pendingStart; i < count; i++) {
+			offerRadius(i);
+		}
+		found = null;
+		return foundCount;
+	}
+
+	/**
+	 * @param o
+	 *            origin of the line
+	 * @param v
+	 *            direction of the line
+	 * @return index of the point nearest to the line (nearest to o if v is
+	 *         zero), -1 if none
+	 */
+	public int nearestToLine(Coords o, Coords v) {
+		lineSqNorm = 0;
+		for (int k = 0; k < dimension; k++) {
+			lineDirection[k] = v.val[k];
+			lineSqNorm += v.val[k] * v.val[k];
+		}
+		if (lineSqNorm == 0) {
+			// degenerated line: distances would be NaN
+			return nearest(o);
+		}
+		setQuery(o.val, 0);
+		heapCapacity = 1;
+		heapSize = 0;
+		System.arraycopy(boxMin, 0, queryBoxMin, 0, dimension);
+		System.arraycopy(boxMax, 0, queryBoxMax, 0, dimension);
+		searchLine(0, built, 0, queryBoxMin, queryBoxMax);
+		for (int i = pendingStart; i < count; i++) {
+			offerLine(i);
+		}
+		return heapSize == 0 ? -1 : heapIndex[0];
+	}
+
+	private void setQuery(double[] p, int offset) {
+		for (int k = 0; k < dimension; k++) {
+			query[k] = p[offset + k];
+		}
+	}
+
+	private int addNoRebuild(double[] p, int offset) {
+		int i = count;
+		System.arraycopy(p, offset, values, i * dimension, dimension);
+		removed[i] = false;
+		count++;
+		return i;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity <= removed.length) {
+			return;
+		}
+		int newCapacity = Math.max(capacity, removed.length * 2);
+		double[] newValues = new double[newCapacity * dimension];
+		System.arraycopy(values, 0, newValues, 0, count * dimension);
+		values = newValues;
+		boolean[] newRemoved = new boolean[newCapacity];
+		System.arraycopy(removed, 0, newRemoved, 0, count);
+		removed = newRemoved;
+	}
+
+	/**
+	 * build tree on order[lo..hi-1]: median (regarding axis) at middle
+	 */
+	private void build(int lo, int hi, int depth) {
+		if (hi - lo <= 1) {
+			return;
+		}
+		int axis = depth % dimension;
+		int m = (lo + hi) >>> 1;
+		select(lo, hi - 1, m, axis);
+		build(lo, m, depth + 1);
+		build(m + 1, hi, depth + 1);
+	}
+
+	/**
+	 * quickselect: put in order[m] the point that would be there if
+	 * order[left..right] was sorted regarding axis
+	 */
+	private void select(int left, int right, int m, int axis) {
+		int l = left, r = right;
+		while (r > l) {
+			double pivot = key((l + r) >>> 1, axis);
+			int i = l, j = r;
+			while (i <= j) {
+				while (key(i, axis) < pivot) {
+					i++;
+				}
+				while (key(j, axis) > pivot) {
+					j--;
+				}
+				if (i <= j) {
+					int tmp = order[i];
+					order[i] = order[j];
+					order[j] = tmp;
+					i++;
+					j--;
+				}
+			}
+			if (m <= j) {
+				r = j;
+			} else if (m >= i) {
+				l = i;
+			} else {
+				return;
+			}
+		}
+	}
+
+	private double key(int j, int axis) {
+		return values[order[j] * dimension + axis];
+	}
+
+	private double squareDistance(int i) {
+		int start = i * dimension;
+		double ret = 0;
+		for (int k = 0; k < dimension; k++) {
+			double d = values[start + k] - query[k];
+			ret += d * d;
+		}
+		return ret;
+	}
+
+	private void searchNearest(int lo, int hi, int depth) {
+		if (lo >= hi) {
+			return;
+		}
+		int m = (lo + hi) >>> 1;
+		int axis = depth % dimension;
+		offerNearest(order[m]);
+		double diff = query[axis] - key(m, axis);
+		if (diff < 0) {
+			searchNearest(lo, m, depth + 1);
+			if (heapSize < heapCapacity || diff * diff < heapSqDist[0]) {
+				searchNearest(m + 1, hi, depth + 1);
+			}
+		} else {
+			searchNearest(m + 1, hi, depth + 1);
+			if (heapSize < heapCapacity || diff * diff < heapSqDist[0]) {
+				searchNearest(lo, m, depth + 1);
+			}
+		}
+	}
+
+	private void offerNearest(int i) {
+		if (!removed[i]) {
+			offer(i, squareDistance(i));
+		}
+	}
+
+	/**
+	 * add point to max-heap of nearest points found
+	 */
+	private void offer(int i, double sqDist) {
+		if (heapSize < heapCapacity) {
+			heapIndex[heapSize] = i;
+			heapSqDist[heapSize] = sqDist;
+			siftUp(heapSize);
+			heapSize++;
+		} else if (sqDist < heapSqDist[0]) {
+			heapIndex[0] = i;
+			heapSqDist[0] = sqDist;
+			siftDown(0);
+		}
+	}
+
+	private void siftUp(int j) {
+		int c = j;
+		while (c > 0) {
+			int parent = (c - 1) >>> 1;
+			if (heapSqDist[parent] >= heapSqDist[c]) {
+				return;
+			}
+			swap(c, parent);
+			c = parent;
+		}
+	}
+
+	private void siftDown(int j) {
+		int c = j;
+		while (true) {
+			int child = 2 * c + 1;
+			if (child >= heapSize) {
+				return;
+			}
+			if (child + 1 < heapSize
+					&& heapSqDist[child + 1] > heapSqDist[child]) {
+				child++;
+			}
+			if (heapSqDist[c] >= heapSqDist[child]) {
+				return;
+			}
+			swap(c, child);
+			c = child;
+		}
+	}
+
+	private void swap(int a, int b) {
+		int i = heapIndex[a];
+		heapIndex[a] = heapIndex[b];
+		heapIndex[b] = i;
+		double d = heapSqDist[a];
+		heapSqDist[a] = heapSqDist[b];
+		heapSqDist[b] = d;
+	}
+
+	private void searchRadius(int lo, int hi, int depth) {
+		if (lo >= hi) {
+			return;
+		}
+		int m = (lo + hi) >>> 1;
+		int axis = depth % dimension;
+		offerRadius(order[m]);
+		double diff = query[axis] - key(m, axis);
+		if (diff <= 0 || diff * diff <= radiusSq) {
+			searchRadius(lo, m, depth + 1);
+		}
+		if (diff >= 0 || diff * diff <= radiusSq) {
+			searchRadius(m + 1, hi, depth + 1);
+		}
+	}
+
+	private void offerRadius(int i) {
+		if (!removed[i] && squareDistance(i) <= radiusSq) {
+			if (foundCount < found.length) {
+				found[foundCount] = i;
+			}
+			foundCount++;
+		}
+	}
+
+	/**
+	 * search nearest to line in order[lo..hi-1], whose points are in box
+	 * [min, max]
+	 */
+	private void searchLine(int lo, int hi, int depth, double[] min,
+			double[] max) {
+		if (lo >= hi) {
+			return;
+		}
+		if (heapSize > 0) {
+			// lower bound of distance from line to the box: distance to box
+			// center minus half diagonal
+			double sqHalfDiagonal = 0;
+			for (int k = 0; k < dimension; k++) {
+				double d = (max[k] - min[k]) / 2;
+				sqHalfDiagonal += d * d;
+			}
+			double bound = Math.sqrt(squareDistanceToLine(min, max))
+					- Math.sqrt(sqHalfDiagonal);
+			if (bound > 0 && bound * bound >= heapSqDist[0]) {
+				return;
+			}
+		}
+		int m = (lo + hi) >>> 1;
+		int axis = depth % dimension;
+		offerLine(order[m]);
+		double split = key(m, axis);
+		// left: [min, split], right: [split, max]
+		double oldMax = max[axis];
+		max[axis] = split;
+		searchLine(lo, m, depth + 1, min, max);
+		max[axis] = oldMax;
+		double oldMin = min[axis];
+		min[axis] = split;
+		searchLine(m + 1, hi, depth + 1, min, max);
+		min[axis] = oldMin;
+	}
+
+	/**
+	 * @return square distance from line to center of box [min, max]
+	 */
+	private double squareDistanceToLine(double[] min, double[] max) {
+		double cx = (min[0] + max[0]) / 2 - query[0];
+		double cy = (min[1] + max[1]) / 2 - query[1];
+		if (dimension == 2) {
+			return squareDistanceToLine(cx, cy, 0);
+		}
+		return squareDistanceToLine(cx, cy, (min[2] + max[2]) / 2 - query[2]);
+	}
+
+	/**
+	 * @return square distance from line to (origin + (x, y, z))
+	 */
+	private double squareDistanceToLine(double x, double y, double z) {
+		double vx = lineDirection[0], vy = lineDirection[1];
+		if (dimension == 2) {
+			double cross = x * vy - y * vx;
+			return cross * cross / lineSqNorm;
+		}
+		double vz = lineDirection[2];
+		double cx = y * vz - z * vy;
+		double cy = z * vx - x * vz;
+		double cz = x * vy - y * vx;
+		return (cx * cx + cy * cy + cz * cz) / lineSqNorm;
+	}
+
+	private void offerLine(int i) {
+		if (removed[i]) {
+			return;
+		}
+		int start = i * dimension;
+		double x = values[start] - query[0];
+		double y = values[start + 1] - query[1];
+		double z = dimension == 2 ? 0 : values[start + 2] - query[2];
+		offer(i, squareDistanceToLine(x, y, z));
+	}
+}
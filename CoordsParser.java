@@ -0,0 +1,268 @@
+package org.geogebra.common.kernel.matrix;
+
+/**
+ * Streaming parser for coordinate text: tuples "(x, y, z)" and / or CSV-like
+ * lines "x, y, z" (values separated by commas, semicolons or spaces), read
+ * directly into {@link Coords} or flat arrays.
+ *
+ * Decimal numbers with at most 15 significant digits and small exponents
+ * are converted exactly without creating strings; other numbers (and NaN,
+ * Infinity) fall back to {@link Double#parseDouble(String)}.
+ */
+public class CoordsParser {
+
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4,
+			1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+			1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+	/** max significant digits for exact conversion */
+	private static final int MAX_FAST_DIGITS = 15;
+
+	private final CharSequence text;
+	private final byte[] bytes;
+	private int position;
+	private final int end;
+
+	/**
+	 * @param text
+	 *            text
+	 */
+	public CoordsParser(CharSequence text) {
+		this.text = text;
+		this.bytes = null;
+		this.position = 0;
+		this.end = text.length();
+	}
+
+	/**
+	 * @param bytes
+	 *            ASCII (or UTF-8) text
+	 * @param offset
+	 *            offset of text
+	 * @param length
+	 *            length of text
+	 */
+	public CoordsParser(byte[] bytes, int offset, int length) {
+		this.text = null;
+		this.bytes = bytes;
+		this.position = offset;
+		this.end = offset + length;
+	}
+
+	/**
+	 * @return whether there is still some text to parse
+	 */
+	public boolean hasNext() {
+		skipBetweenTuples();
+		return position < end;
+	}
+
+	/**
+	 * read next tuple into ret
+	 *
+	 * @param ret
+	 *            output (values beyond its length are skipped)
+	 * @return number of values of the tuple, -1 if no more tuple
+	 * @throws NumberFormatException
+	 *             if a value is not a number
+	 */
+	public int next(Coords ret) {
+		int n = nextTuple(ret.val, 0, ret.getLength());
+		if (n > 0) {
+			ret.setNormsToRecompute();
+			ret.markModified();
+		}
+		return n;
+	}
+
+	/**
+	 * read next tuple
+	 *
+	 * @param out
+	 *            output values
+	 * @param offset
+	 *            offset of the tuple in out
+	 * @param max
+	 *            max number of values stored (others are skipped)
+	 * @return number of values of the tuple, -1 if no more tuple
+	 * @throws NumberFormatException
+	 *             if a value is not a number
+	 */
+	public int nextTuple(double[] out, int offset, int max) {
+		skipBetweenTuples();
+		if (position == end) {
+			return -1;
+		}
+		boolean parenthesis = charAt(position) == '(';
+		if (parenthesis) {
+			position++;
+		}
+		int n = 0;
+		while (position < end) {
+			char c = charAt(position);
+			if (c == ')') {
+				position++;
+				break;
+			}
+			if (c == '\n' || c == '\r') {
+				if (!parenthesis) {
+					break;
+				}
+				position++;
+			} else if (c <= ' ' || c == ',' || c == ';') {
+				position++;
+			} else if (c == '(' && !parenthesis) {
+				break;
+			} else {
+				double v = parseNumber();
+				if (n < max) {
+					out[offset + n] = v;
+				}
+				n++;
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * read all remaining tuples, each into dimension values (missing values
+	 * are set to 0)
+	 *
+	 * @param out
+	 *            output: {x0, y0, ..., x1, ...}
+	 * @param dimension
+	 *            values of each point
+	 * @param maxPoints
+	 *            max number of points read
+	 * @return number of points read
+	 * @throws NumberFormatException
+	 *             if a value is not a number
+	 */
+	public int nextPoints(double[] out, int dimension, int maxPoints) {
+		int count = 0;
+		while (count < maxPoints) {
+			int offset = count * dimension;
+			int n = nextTuple(out, offset, dimension);
+			if (n < 0) {
+				break;
+			}
+			for (int k = n; k < dimension; k++) {
+				out[offset + k] = 0;
+			}
+			count++;
+		}
+		return count;
+	}
+
+	private void skipBetweenTuples() {
+		while (position < end) {
+			char c = charAt(position);
+			if (c <= ' ' || c == ',' || c == ';' || c == ')') {
+				position++;
+			} else {
+				return;
+			}
+		}
+	}
+
+	private char charAt(int i) {
+		return bytes == null ? text.charAt(i) : (char) (bytes[i] & 0xFF);
+	}
+
+	private static boolean isSeparator(char c) {
+		return c <= ' ' || c == ',' || c == ';' || c == '(' || c == ')';
+	}
+
+	private double parseNumber() {
+		int start = position;
+		boolean negative = false;
+		char c = charAt(position);
+		if (c == '-' || c == '+') {
+			negative = c == '-';
+			position++;
+		}
+		long mantissa = 0;
+		int significant = 0;
+		int exponent = 0;
+		boolean hasDigits = false;
+		boolean point = false;
+		while (position < end) {
+			c = charAt(position);
+			if (c >= '0' && c <= '9') {
+				hasDigits = true;
+				if (mantissa != 0 || c != '0') {
+					significant++;
+					if (significant <= MAX_FAST_DIGITS) {
+						mantissa = mantissa * 10 + (c - '0');
+					} else {
+						// digit dropped, only for exponent
+						exponent++;
+					}
+				}
+				if (point) {
+					exponent--;
+				}
+				position++;
+			} else if (c == '.' && !point) {
+				point = true;
+				position++;
+			} else {
+				break;
+			}
+		}
+		if (hasDigits && position < end
+				&& (charAt(position) == 'e' || charAt(position) == 'E')) {
+			position++;
+			boolean negativeExponent = false;
+			if (position < end
+					&& (charAt(position) == '-' || charAt(position) == '+')) {
+				negativeExponent = charAt(position) == '-';
+				position++;
+			}
+			int e = 0;
+			boolean hasExponentDigits = false;
+			while (position < end && (c = charAt(position)) >= '0'
+					&& c <= '9') {
+				hasExponentDigits = true;
+				if (e < 100000) {
+					e = e * 10 + (c - '0');
+				}
+				position++;
+			}
+			if (!hasExponentDigits) {
+				return parseFallback(start);
+			}
+			exponent += negativeExponent ? -e : e;
+		}
+		if (!hasDigits
+				|| (position < end && !isSeparator(charAt(position)))
+				|| significant > MAX_FAST_DIGITS) {
+			return parseFallback(start);
+		}
+		double value;
+		if (mantissa == 0) {
+			value = 0;
+		} else if (exponent >= 0 && exponent < POWERS_OF_TEN.length) {
+			value = mantissa * POWERS_OF_TEN[exponent];
+		} else if (exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+			value = mantissa / POWERS_OF_TEN[-exponent];
+		} else {
+			return parseFallback(start);
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * parse the whole token starting at start with standard parser
+	 */
+	private double parseFallback(int start) {
+		position = start;
+		while (position < end && !isSeparator(charAt(position))) {
+			position++;
+		}
+		StringBuilder sb = new StringBuilder(position - start);
+		for (int i = start; i < position; i++) {
+			sb.append(charAt(i));
+		}
+		return Double.parseDouble(sb.toString());
+	}
+}
@@ -0,0 +1,146 @@
+package org.geogebra.common.kernel.matrix;
+
+import java.util.Arrays;
+
+/**
+ * Pool of temporary {@link Coords} and {@link CoordMatrix}, handed out inside
+ * a scope and taken back when the scope is closed:
+ *
+ * <pre>
+ * try (CoordsScratch.Scope scope = scratch.open()) {
+ * 	Coords tmp = scratch.coords(4);
+ * 	...
+ * }
+ * </pre>
+ *
+ * Vectors are pooled by length, so once warmed up no allocation is done,
+ * even when lengths vary between calls. A scratch is not thread-safe: each
+ * thread (e.g. each kernel) must own its own scratch.
+ */
+public final class CoordsScratch {
+
+	/** temporary vectors, one pool per length */
+	private Coords[][] coords = new Coords[5][];
+	/** number of vectors in use, for each length */
+	private int[] coordsTop = new int[5];
+	private CoordMatrix[] matrices = new CoordMatrix[4];
+	private int matricesTop;
+	private Scope[] scopes = new Scope[4];
+	private int depth;
+
+	/**
+	 * open a new scope; temporaries got in this scope are taken back when it
+	 * is closed
+	 *
+	 * @return scope
+	 */
+	public Scope open() {
+		if (depth == scopes.length) {
+			scopes = Arrays.copyOf(scopes, depth * 2);
+		}
+		Scope scope = scopes[depth];
+		if (scope == null) {
+			scope = new Scope(depth);
+			scopes[depth] = scope;
+		}
+		if (scope.coordsMarks.length < coordsTop.length) {
+			scope.coordsMarks = new int[coordsTop.length];
+		}
+		System.arraycopy(coordsTop, 0, scope.coordsMarks, 0,
+				coordsTop.length);
+		scope.matricesMark = matricesTop;
+		depth++;
+		return scope;
+	}
+
+	/**
+	 * @param length
+	 *            vector length
+	 * @return temporary vector, all values set to 0
+	 */
+	public Coords coords(int length) {
+		if (length >= coords.length) {
+			coords = Arrays.copyOf(coords, length + 1);
+			coordsTop = Arrays.copyOf(coordsTop, length + 1);
+		}
+		Coords[] pool = coords[length];
+		int top = coordsTop[length];
+		if (pool == null) {
+			pool = new Coords[8];
+			coords[length] = pool;
+		} else if (top == pool.length) {
+			pool = Arrays.copyOf(pool, top * 2);
+			coords[length] = pool;
+		}
+		Coords ret = pool[top];
+		if (ret == null) {
+			ret = new Coords(length);
+			pool[top] = ret;
+		} else {
+			ret.set(0);
+		}
+		coordsTop[length] = top + 1;
+		return ret;
+	}
+
+	/**
+	 * @param rows
+	 *            number of rows
+	 * @param columns
+	 *            number of columns
+	 * @return temporary matrix, all values set to 0
+	 */
+	public CoordMatrix matrix(int rows, int columns) {
+		if (matricesTop == matrices.length) {
+			matrices = Arrays.copyOf(matrices, matricesTop * 2);
+		}
+		CoordMatrix ret = matrices[matricesTop];
+		if (ret == null || ret.getRows() != rows
+				|| ret.getColumns() != columns) {
+			ret = rows == 4 && columns == 4 ? new CoordMatrix4x4()
+					: new CoordMatrix(rows, columns);
+			matrices[matricesTop] = ret;
+		} else {
+			ret.set(0);
+		}
+		matricesTop++;
+		return ret;
+	}
+
+	/**
+	 * Scope of temporaries, see {@link CoordsScratch#open()}
+	 */
+	public final class Scope implements AutoCloseable {
+
+		private int[] coordsMarks = new int[5];
+		private int matricesMark;
+		private final int index;
+
+		/**
+		 * use {@link CoordsScratch#open()}
+		 */
+		Scope(int index) {
+			this.index = index;
+		}
+
+		/**
+		 * take back temporaries got in this scope
+		 *
+		 * @throws IllegalStateException
+		 *             if this is not the innermost open scope (closed twice
+		 *             or out of order)
+		 */
+		@Override
+		public void close() {
+			if (depth != index + 1) {
+				throw new IllegalStateException(
+						"scope closed twice or out of order");
+			}
+			for (int i = 0; i < coordsTop.length; i++) {
+				coordsTop[i] = i < coordsMarks.length ? coordsMarks[i] : 0;
+			}
+			matricesTop = matricesMark;
+			depth--;
+		}
+	}
+}
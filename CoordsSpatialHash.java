@@ -0,0 +1,402 @@
+package org.geogebra.common.kernel.matrix;
+
+import org.geogebra.common.util.DoubleUtil;
+
+/**
+ * Set of points with near-equality lookup, matching
+ * {@link Coords#equalsForKernel(Coords, double)}: a point q matches a stored
+ * point p if q.equalsForKernel(p, precision).
+ *
+ * Points are hashed on a grid (cell size 2 * precision) on their first three
+ * coords, so that a lookup only checks points in cells that can contain a
+ * match, instead of all points. Cells to check are computed with the same
+ * bounds (q - precision, q + precision) as {@link DoubleUtil#isEqual}, so
+ * points near cell boundaries are found too. Points with coords too large
+ * (or not finite) for the grid are only checked by a linear scan.
+ *
+ * Lookups return the first (lowest index) matching point, as a loop over the
+ * points in insertion order would do.
+ */
+public class CoordsSpatialHash {
+
+	/** max cell index (in absolute value) used in the grid */
+	private static final double MAX_CELL = 1E15;
+	private static final int MAX_HASHED_DIMENSION = 3;
+	private static final int NO_HASH = Integer.MIN_VALUE;
+
+	private final int dimension;
+	private final int hashedDimension;
+	private final double precision;
+	private final double cellSize;
+
+	private double[] values;
+	/** hash of the cell of each point (NO_HASH if not in the grid) */
+	private int[] hashes;
+	/** next point in the same bucket */
+	private int[] next;
+	private int[] buckets;
+	private int size;
+	private int gridSize;
+
+	/** cells range for current lookup */
+	private final double[] lowCell = new double[MAX_HASHED_DIMENSION];
+	private final double[] highCell = new double[MAX_HASHED_DIMENSION];
+
+	/**
+	 * @param dimension
+	 *            number of coords of each point
+	 * @param precision
+	 *            precision used for equality (must be positive)
+	 */
+	public CoordsSpatialHash(int dimension, double precision) {
+		this.dimension = dimension;
+		this.hashedDimension = Math.min(dimension, MAX_HASHED_DIMENSION);
+		this.precision = precision;
+		this.cellSize = 2 * precision;
+		values = new double[16 * dimension];
+		hashes = new int[16];
+		next = new int[16];
+		buckets = new int[32];
+		clear();
+	}
+
+	/**
+	 * remove all points
+	 */
+	public void clear() {
+		size = 0;
+		gridSize = 0;
+		for (int i = 0; i < buckets.length; i++) {
+			buckets[i] = -1;
+		}
+	}
+
+	/**
+	 * @return number of points
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return number of coords of each point
+	 */
+	public int getDimension() {
+		return dimension;
+	}
+
+	/**
+	 * @param i
+	 *            point index
+	 * @param k
+	 *            coord index (0 for x)
+	 * @return coord value
+	 */
+	public double get(int i, int k) {
+		return values[i * dimension + k];
+	}
+
+	/**
+	 * @param v
+	 *            point (length at least dimension)
+	 * @return index of first point matching v, -1 if none
+	 */
+	public int indexOf(Coords v) {
+		return indexOf(v.val, 0);
+	}
+
+	/**
+	 * @param v
+	 *            values
+	 * @param offset
+	 *            offset of the point in v
+	 * @return index of first point matching the point, -1 if none
+	 */
+	public int indexOf(double[] v, int offset) {
+		if (!setCellsRange(v, offset)) {
+			return indexOfLinear(v, offset);
+		}
+		return indexOfInGrid(v, offset);
+	}
+
+	/**
+	 * add the point (even if a matching point already exists)
+	 *
+	 * @param v
+	 *            point (length at least dimension)
+	 * @return index of the point
+	 */
+	public int add(Coords v) {
+		return add(v.val, 0);
+	}
+
+	/**
+	 * add the point (even if a matching point already exists)
+	 *
+	 * @param v
+	 *            values
+	 * @param offset
+	 *            offset of the point in v
+	 * @return index of the point
+	 */
+	public int add(double[] v, int offset) {
+		ensureCapacity(size + 1);
+		int hash = cellHash(v, offset);
+		if (hash != NO_HASH && gridSize + 1 > buckets.length * 3 / 4) {
+			rehash(buckets.length * 2);
+		}
+		int i = size;
+		System.arraycopy(v, offset, values, i * dimension, dimension);
+		hashes[i] = hash;
+		size++;
+		if (hash != NO_HASH) {
+			insertInBucket(i);
+			gridSize++;
+		}
+		return i;
+	}
+
+	/**
+	 * add the point if no matching point exists
+	 *
+	 * @param v
+	 *            point (length at least dimension)
+	 * @return index of first matching point, or of the point added
+	 */
+	public int put(Coords v) {
+		return put(v.val, 0);
+	}
+
+	/**
+	 * add the point if no matching point exists
+	 *
+	 * @param v
+	 *            values
+	 * @param offset
+	 *            offset of the point in v
+	 * @return index of first matching point, or of the point added
+	 */
+	public int put(double[] v, int offset) {
+		int index = indexOf(v, offset);
+		if (index >= 0) {
+			return index;
+		}
+		return add(v, offset);
+	}
+
+	/**
+	 * Removes duplicates of points (regarding
+	 * {@link Coords#equalsForKernel(Coords, double)}): each point is kept
+	 * unless it matches a point kept before.
+	 *
+	 * @param points
+	 *            points (all with same length)
+	 * @param precision
+	 *            precision
+	 * @param representatives
+	 *            output: for each point, index (in points) of the kept point
+	 *            it matches (itself if kept); may be null
+	 * @return number of points kept
+	 */
+	public static int deduplicate(Coords[] points, double precision,
+			int[] representatives) {
+		if (points.length == 0) {
+			return 0;
+		}
+		CoordsSpatialHash hash = new CoordsSpatialHash(points[0].getLength(),
+				precision);
+		int[] kept = new int[points.length];
+		for (int i = 0; i < points.length; i++) {
+			int before = hash.size();
+			int index = hash.put(points[i]);
+			if (index == before) {
+				kept[index] = i;
+			}
+			if (representatives != null) {
+				representatives[i] = kept[index];
+			}
+		}
+		return hash.size();
+	}
+
+	/**
+	 * Removes duplicates of points (regarding
+	 * {@link Coords#equalsForKernel(Coords, double)}): each point is kept
+	 * unless it matches a point kept before.
+	 *
+	 * @param points
+	 *            points {x0, y0, ..., x1, y1, ...}
+	 * @param count
+	 *            number of points
+	 * @param dimension
+	 *            number of coords of each point
+	 * @param precision
+	 *            precision
+	 * @param representatives
+	 *            output: for each point, index (in points) of the kept point
+	 *            it matches (itself if kept); may be null
+	 * @return number of points kept
+	 */
+	public static int deduplicate(double[] points, int count, int dimension,
+			double precision, int[] representatives) {
+		CoordsSpatialHash hash = new CoordsSpatialHash(dimension, precision);
+		int[] kept = new int[count];
+		for (int i = 0; i < count; i++) {
+			int before = hash.size();
+			int index = hash.put(points, i * dimension);
+			if (index == before) {
+				kept[index] = i;
+			}
+			if (representatives != null) {
+				representatives[i] = kept[index];
+			}
+		}
+		return hash.size();
+	}
+
+	private int indexOfLinear(double[] v, int offset) {
+		for (int i = 0; i < size; i++) {
+			if (matches(v, offset, i)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private int indexOfInGrid(double[] v, int offset) {
+		int found = -1;
+		// iterate over all cells in [lowCell, highCell]
+		double c0 = lowCell[0];
+		double c1 = hashedDimension > 1 ? lowCell[1] : 0;
+		double c2 = hashedDimension > 2 ? lowCell[2] : 0;
+		while (true) {
+			int hash = hash(c0, c1, c2);
+			for (int i = buckets[hash & (buckets.length - 1)]; i >= 0; i = next[i]) {
+				if ((found < 0 || i < found) && hashes[i] == hash
+						&& matches(v, offset, i)) {
+					found = i;
+				}
+			}
+			// next cell
+			c0++;
+			if (c0 > highCell[0]) {
+				c0 = lowCell[0];
+				if (hashedDimension < 2) {
+					return found;
+				}
+				c1++;
+				if (c1 > highCell[1]) {
+					c1 = lowCell[1];
+					if (hashedDimension < 3) {
+						return found;
+					}
+					c2++;
+					if (c2 > highCell[2]) {
+						return found;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return true if point at offset in v equals (for kernel) point i
+	 */
+	private boolean matches(double[] v, int offset, int i) {
+		int start = i * dimension;
+		for (int k = 0; k < dimension; k++) {
+			if (!DoubleUtil.isEqual(v[offset + k], values[start + k],
+					precision)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * set cells that can contain points y with x - precision &lt;= y &lt;= x +
+	 * precision (for each coord x of the point)
+	 *
+	 * @return false if cells are out of the grid
+	 */
+	private boolean setCellsRange(double[] v, int offset) {
+		for (int k = 0; k < hashedDimension; k++) {
+			double x = v[offset + k];
+			double low = Math.floor((x - precision) / cellSize);
+			double high = Math.floor((x + precision) / cellSize);
+			// false also for NaN
+			if (!(low >= -MAX_CELL && high <= MAX_CELL)) {
+				return false;
+			}
+			lowCell[k] = low;
+			highCell[k] = high;
+		}
+		return true;
+	}
+
+	/**
+	 * @return hash of the cell containing the point, NO_HASH if out of the
+	 *         grid
+	 */
+	private int cellHash(double[] v, int offset) {
+		double c0 = 0, c1 = 0, c2 = 0;
+		for (int k = 0; k < hashedDimension; k++) {
+			double c = Math.floor(v[offset + k] / cellSize);
+			// false also for NaN
+			if (!(c >= -MAX_CELL && c <= MAX_CELL)) {
+				return NO_HASH;
+			}
+			if (k == 0) {
+				c0 = c;
+			} else if (k == 1) {
+				c1 = c;
+			} else {
+				c2 = c;
+			}
+		}
+		return hash(c0, c1, c2);
+	}
+
+	private static int hash(double c0, double c1, double c2) {
+		long h = (long) c0 * 0x9E3779B97F4A7C15L;
+		h = (h ^ (h >>> 29)) + (long) c1 * 0xC2B2AE3D27D4EB4FL;
+		h = (h ^ (h >>> 29)) + (long) c2 * 0x165667B19E3779F9L;
+		int ret = (int) (h ^ (h >>> 32));
+		return ret == NO_HASH ? 0 : ret;
+	}
+
+	private void insertInBucket(int i) {
+		int b = hashes[i] & (buckets.length - 1);
+		next[i] = buckets[b];
+		buckets[b] = i;
+	}
+
+	private void rehash(int capacity) {
+		buckets = new int[capacity];
+		for (int b = 0; b < capacity; b++) {
+			buckets[b] = -1;
+		}
+		// insert in index order so that chains stay in reverse index order
+		for (int i = 0; i < size; i++) {
+			if (hashes[i] != NO_HASH) {
+				insertInBucket(i);
+			}
+		}
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity <= hashes.length) {
+			return;
+		}
+		int newCapacity = Math.max(capacity, hashes.length * 2);
+		double[] newValues = new double[newCapacity * dimension];
+		System.arraycopy(values, 0, newValues, 0, size * dimension);
+		values = newValues;
+		int[] newHashes = new int[newCapacity];
+		System.arraycopy(hashes, 0, newHashes, 0, size);
+		hashes = newHashes;
+		int[] newNext = new int[newCapacity];
+		System.arraycopy(next, 0, newNext, 0, size);
+		next = newNext;
+	}
+}
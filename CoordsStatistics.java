@@ -0,0 +1,327 @@
+package org.geogebra.common.kernel.matrix;
+
+/**
+ * Barycenter, bounding box, min/max norm and covariance of a (large) set of
+ * 2D or 3D points, computed in one pass.
+ *
+ * Points are processed by blocks of fixed size: each block is reduced
+ * (centered on its own mean for accuracy), then merged in order into the
+ * statistics (Chan et al. pairwise update). Results only depend on the
+ * points order, not on how they are split between calls to add(...), as
+ * long as calls are aligned on blocks; partial statistics computed
+ * elsewhere (e.g. on other threads) can be combined with
+ * {@link #merge(CoordsStatistics)} in a fixed order for deterministic
+ * results.
+ */
+public class CoordsStatistics {
+
+	/** number of points of each block */
+	public static final int BLOCK_SIZE = 1024;
+
+	private final int dimension;
+	private long count;
+	private final double[] mean = new double[3];
+	/** sum of (p - mean)_i (p - mean)_j, i, j &lt; dimension */
+	private final double[] comoment = new double[9];
+	private final double[] min = new double[3];
+	private final double[] max = new double[3];
+	private double minSqNorm, maxSqNorm;
+	private final double[] delta = new double[3];
+
+	// block reduction
+	private final CoordsStatistics block;
+	private final double[] blockValues;
+
+	/**
+	 * @param dimension
+	 *            2 or 3
+	 */
+	public CoordsStatistics(int dimension) {
+		this(dimension, true);
+	}
+
+	private CoordsStatistics(int dimension, boolean withBlock) {
+		this.dimension = dimension;
+		if (withBlock) {
+			block = new CoordsStatistics(dimension, false);
+			blockValues = new double[BLOCK_SIZE * dimension];
+		} else {
+			block = null;
+			blockValues = null;
+		}
+		clear();
+	}
+
+	/**
+	 * reset (no points)
+	 */
+	public void clear() {
+		count = 0;
+		for (int k = 0; k < 3; k++) {
+			mean[k] = 0;
+			min[k] = Double.POSITIVE_INFINITY;
+			max[k] = Double.NEGATIVE_INFINITY;
+		}
+		for (int k = 0; k < 9; k++) {
+			comoment[k] = 0;
+		}
+		minSqNorm = Double.POSITIVE_INFINITY;
+		maxSqNorm = Double.NEGATIVE_INFINITY;
+	}
+
+	/**
+	 * add points (first dimension coords of each)
+	 *
+	 * @param points
+	 *            points
+	 * @return this
+	 */
+	public CoordsStatistics add(Coords... points) {
+		return add(points, 0, points.length);
+	}
+
+	/**
+	 * add points[from..to-1] (first dimension coords of each)
+	 *
+	 * @param points
+	 *            points
+	 * @param from
+	 *            first point index
+	 * @param to
+	 *            last point index + 1
+	 * @return this
+	 */
+	public CoordsStatistics add(Coords[] points, int from, int to) {
+		for (int start = from; start < to; start += BLOCK_SIZE) {
+			int end = Math.min(start + BLOCK_SIZE, to);
+			int k = 0;
+			for (int i = start; i < end; i++) {
+				double[] v = points[i].val;
+				for (int j = 0; j < dimension; j++) {
+					blockValues[k++] = v[j];
+				}
+			}
+			addBlock(blockValues, 0, end - start);
+		}
+		return this;
+	}
+
+	/**
+	 * add points
+	 *
+	 * @param values
+	 *            points {x0, y0, (z0,) x1, ...}
+	 * @param n
+	 *            number of points
+	 * @return this
+	 */
+	public CoordsStatistics add(double[] values, int n) {
+		for (int start = 0; start < n; start += BLOCK_SIZE) {
+			addBlock(values, start * dimension,
+					Math.min(BLOCK_SIZE, n - start));
+		}
+		return this;
+	}
+
+	/**
+	 * add all points (x, y, z, w) of the buffer, using their inhomogeneous
+	 * coords (x/w, y/w, z/w) for 3D, (x/w, y/w) for 2D
+	 *
+	 * @param points
+	 *            points
+	 * @return this
+	 */
+	public CoordsStatistics add(CoordsBuffer points) {
+		int n = points.size();
+		for (int start = 0; start < n; start += BLOCK_SIZE) {
+			int end = Math.min(start + BLOCK_SIZE, n);
+			int k = 0;
+			for (int i = start; i < end; i++) {
+				double w = points.w[i];
+				blockValues[k++] = points.x[i] / w;
+				blockValues[k++] = points.y[i] / w;
+				if (dimension > 2) {
+					blockValues[k++] = points.z[i] / w;
+				}
+			}
+			addBlock(blockValues, 0, end - start);
+		}
+		return this;
+	}
+
+	/**
+	 * merge other statistics into this (as if other points were added)
+	 *
+	 * @param other
+	 *            other statistics (same dimension)
+	 * @return this
+	 */
+	public CoordsStatistics merge(CoordsStatistics other) {
+		if (other.count == 0) {
+			return this;
+		}
+		if (count == 0) {
+			set(other);
+			return this;
+		}
+		double n1 = count, n2 = other.count;
+		double n = n1 + n2;
+		for (int i = 0; i < dimension; i++) {
+			delta[i] = other.mean[i] - mean[i];
+		}
+		double f = n1 * n2 / n;
+		for (int i = 0; i < dimension; i++) {
+			for (int j = 0; j < dimension; j++) {
+				comoment[3 * i + j] += other.comoment[3 * i + j]
+						+ delta[i] * delta[j] * f;
+			}
+			mean[i] += delta[i] * (n2 / n);
+			min[i] = Math.min(min[i], other.min[i]);
+			max[i] = Math.max(max[i], other.max[i]);
+		}
+		minSqNorm = Math.min(minSqNorm, other.minSqNorm);
+		maxSqNorm = Math.max(maxSqNorm, other.maxSqNorm);
+		count += other.count;
+		return this;
+	}
+
+	private void set(CoordsStatistics other) {
+		count = other.count;
+		System.arraycopy(other.mean, 0, mean, 0, 3);
+		System.arraycopy(other.comoment, 0, comoment, 0, 9);
+		System.arraycopy(other.min, 0, min, 0, 3);
+		System.arraycopy(other.max, 0, max, 0, 3);
+		minSqNorm = other.minSqNorm;
+		maxSqNorm = other.maxSqNorm;
+	}
+
+	/**
+	 * reduce values[offset..] (n points, at most one block) into block, then
+	 * merge it
+	 */
+	private void addBlock(double[] values, int offset, int n) {
+		if (n == 0) {
+			return;
+		}
+		block.clear();
+		int dim = dimension;
+		int end = offset + n * dim;
+		double[] m = block.mean;
+		for (int k = offset; k < end; k += dim) {
+			for (int i = 0; i < dim; i++) {
+				m[i] += values[k + i];
+			}
+		}
+		for (int i = 0; i < dim; i++) {
+			m[i] /= n;
+		}
+		double[] c = block.comoment;
+		double[] lo = block.min, hi = block.max;
+		double minSq = Double.POSITIVE_INFINITY;
+		double maxSq = Double.NEGATIVE_INFINITY;
+		double dx, dy, dz;
+		for (int k = offset; k < end; k += dim) {
+			double x = values[k], y = values[k + 1];
+			double z = dim > 2 ? values[k + 2] : 0;
+			dx = x - m[0];
+			dy = y - m[1];
+			c[0] += dx * dx;
+			c[1] += dx * dy;
+			c[4] += dy * dy;
+			if (dim > 2) {
+				dz = z - m[2];
+				c[2] += dx * dz;
+				c[5] += dy * dz;
+				c[8] += dz * dz;
+			}
+			lo[0] = Math.min(lo[0], x);
+			hi[0] = Math.max(hi[0], x);
+			lo[1] = Math.min(lo[1], y);
+			hi[1] = Math.max(hi[1], y);
+			lo[2] = Math.min(lo[2], z);
+			hi[2] = Math.max(hi[2], z);
+			double sq = x * x + y * y + z * z;
+			minSq = Math.min(minSq, sq);
+			maxSq = Math.max(maxSq, sq);
+		}
+		c[3] = c[1];
+		c[6] = c[2];
+		c[7] = c[5];
+		block.minSqNorm = minSq;
+		block.maxSqNorm = maxSq;
+		block.count = n;
+		merge(block);
+	}
+
+	/**
+	 * @return number of points
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @param ret
+	 *            output: barycenter (length at least dimension)
+	 * @return ret
+	 */
+	public Coords getBarycenter(Coords ret) {
+		for (int i = 0; i < dimension; i++) {
+			ret.set(i + 1, mean[i]);
+		}
+		return ret;
+	}
+
+	/**
+	 * @param ret
+	 *            output: bounding box min corner (length at least dimension)
+	 * @return ret
+	 */
+	public Coords getMin(Coords ret) {
+		for (int i = 0; i < dimension; i++) {
+			ret.set(i + 1, min[i]);
+		}
+		return ret;
+	}
+
+	/**
+	 * @param ret
+	 *            output: bounding box max corner (length at least dimension)
+	 * @return ret
+	 */
+	public Coords getMax(Coords ret) {
+		for (int i = 0; i < dimension; i++) {
+			ret.set(i + 1, max[i]);
+		}
+		return ret;
+	}
+
+	/**
+	 * @return min norm of the points
+	 */
+	public double getMinNorm() {
+		return Math.sqrt(minSqNorm);
+	}
+
+	/**
+	 * @return max norm of the points
+	 */
+	public double getMaxNorm() {
+		return Math.sqrt(maxSqNorm);
+	}
+
+	/**
+	 * @param ret
+	 *            output: covariance matrix (dimension x dimension,
+	 *            population covariance)
+	 * @return ret
+	 */
+	public CoordMatrix getCovariance(CoordMatrix ret) {
+		for (int i = 0; i < dimension; i++) {
+			for (int j = 0; j < dimension; j++) {
+				ret.set(i + 1, j + 1, comoment[3 * i + j] / count);
+			}
+		}
+		return ret;
+	}
+}
@@ -0,0 +1,314 @@
+package org.geogebra.common.kernel.matrix;
+
+import java.util.ArrayList;
+
+/**
+ * List of coords with same dimension, stored interleaved in pages owned by a
+ * {@link CoordsArena}. Provides the basic {@link Coords} arithmetic directly
+ * on stored values, addressed by index.
+ *
+ * Create it with {@link CoordsArena#allocate(int)}. Once the arena has been
+ * reset or closed, every method except {@link #getDimension()} and
+ * {@link #size()} throws an {@link IllegalStateException}.
+ */
+public class CoordsStore {
+
+	private static final int PAGE_MASK = CoordsArena.PAGE_COORDS - 1;
+
+	private CoordsArena arena;
+	private final int dimension;
+	private final int pageLength;
+	private ArrayList<double[]> pages = new ArrayList<>();
+	private int size;
+
+	/**
+	 * @param arena
+	 *            memory owner
+	 * @param dimension
+	 *            number of values for each coords
+	 */
+	CoordsStore(CoordsArena arena, int dimension) {
+		this.arena = arena;
+		this.dimension = dimension;
+		this.pageLength = CoordsArena.PAGE_COORDS * dimension;
+	}
+
+	/**
+	 * @return number of values for each coords
+	 */
+	public int getDimension() {
+		return dimension;
+	}
+
+	/**
+	 * @return number of coords stored
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return number of values allocated
+	 */
+	long getAllocatedValues() {
+		return pages == null ? 0 : (long) pages.size() * pageLength;
+	}
+
+	/**
+	 * give pages back to the arena
+	 *
+	 * @param freePages
+	 *            arena free pages
+	 */
+	void release(ArrayList<double[]> freePages) {
+		freePages.addAll(pages());
+		pages = null;
+		arena = null;
+		size = 0;
+	}
+
+	/**
+	 * remove all coords (pages are kept)
+	 */
+	public void clear() {
+		pages();
+		size = 0;
+	}
+
+	/**
+	 * append a new coords, all values set to 0
+	 *
+	 * @return index of the new coords
+	 */
+	public int add() {
+		ArrayList<double[]> storePages = pages();
+		if (size == storePages.size() << CoordsArena.PAGE_COORDS_SHIFT) {
+			storePages.add(arena.takePage(pageLength));
+		}
+		double[] page = page(size);
+		int offset = offset(size);
+		for (int k = 0; k < dimension; k++) {
+			page[offset + k] = 0;
+		}
+		return size++;
+	}
+
+	/**
+	 * append values of v (missing values are set to 0)
+	 *
+	 * @param v
+	 *            coords
+	 * @return index of the new coords
+	 */
+	public int add(Coords v) {
+		int i = add();
+		set(i, v);
+		return i;
+	}
+
+	private double[] page(int i) {
+		return pages().get(i >>> CoordsArena.PAGE_COORDS_SHIFT);
+	}
+
+	private ArrayList<double[]> pages() {
+		if (pages == null) {
+			throw new IllegalStateException("store is released");
+		}
+		return pages;
+	}
+
+	private int offset(int i) {
+		return (i & PAGE_MASK) * dimension;
+	}
+
+	/**
+	 * @param i
+	 *            coords index
+	 * @param k
+	 *            value index (0 for x)
+	 * @return value
+	 */
+	public double get(int i, int k) {
+		return page(i)[offset(i) + k];
+	}
+
+	/**
+	 * @param i
+	 *            coords index
+	 * @param k
+	 *            value index (0 for x)
+	 * @param value
+	 *            value
+	 */
+	public void set(int i, int k, double value) {
+		page(i)[offset(i) + k] = value;
+	}
+
+	/**
+	 * set coords i to v values (missing values are set to 0)
+	 *
+	 * @param i
+	 *            index
+	 * @param v
+	 *            coords
+	 */
+	public void set(int i, Coords v) {
+		double[] page = page(i);
+		int offset = offset(i);
+		int len = Math.min(dimension, v.getLength());
+		for (int k = 0; k < len; k++) {
+			page[offset + k] = v.val[k];
+		}
+		for (int k = len; k < dimension; k++) {
+			page[offset + k] = 0;
+		}
+	}
+
+	/**
+	 * copy coords i values into ret (only ret.getLength() first values)
+	 *
+	 * @param i
+	 *            index
+	 * @param ret
+	 *            output coords
+	 * @return ret
+	 */
+	public Coords get(int i, Coords ret) {
+		double[] page = page(i);
+		int offset = offset(i);
+		int len = Math.min(dimension, ret.getLength());
+		for (int k = 0; k < len; k++) {
+			ret.set(k + 1, page[offset + k]);
+		}
+		return ret;
+	}
+
+	/**
+	 * set coords dest to coords a + coords b
+	 *
+	 * @param dest
+	 *            destination index
+	 * @param a
+	 *            first index
+	 * @param b
+	 *            second index
+	 */
+	public void setAdd(int dest, int a, int b) {
+		double[] pd = page(dest), pa = page(a), pb = page(b);
+		int od = offset(dest), oa = offset(a), ob = offset(b);
+		for (int k = 0; k < dimension; k++) {
+			pd[od + k] = pa[oa + k] + pb[ob + k];
+		}
+	}
+
+	/**
+	 * set coords dest to coords a - coords b
+	 *
+	 * @param dest
+	 *            destination index
+	 * @param a
+	 *            first index
+	 * @param b
+	 *            second index
+	 */
+	public void setSub(int dest, int a, int b) {
+		double[] pd = page(dest), pa = page(a), pb = page(b);
+		int od = offset(dest), oa = offset(a), ob = offset(b);
+		for (int k = 0; k < dimension; k++) {
+			pd[od + k] = pa[oa + k] - pb[ob + k];
+		}
+	}
+
+	/**
+	 * set coords dest to coords a * factor
+	 *
+	 * @param dest
+	 *            destination index
+	 * @param a
+	 *            index
+	 * @param factor
+	 *            factor
+	 */
+	public void setMul(int dest, int a, double factor) {
+		double[] pd = page(dest), pa = page(a);
+		int od = offset(dest), oa = offset(a);
+		for (int k = 0; k < dimension; k++) {
+			pd[od + k] = pa[oa + k] * factor;
+		}
+	}
+
+	/**
+	 * multiply all stored values by factor
+	 *
+	 * @param factor
+	 *            factor
+	 */
+	public void mulInside(double factor) {
+		ArrayList<double[]> storePages = pages();
+		int remaining = size * dimension;
+		for (int p = 0; remaining > 0; p++) {
+			double[] page = storePages.get(p);
+			int len = Math.min(remaining, pageLength);
+			for (int k = 0; k < len; k++) {
+				page[k] *= factor;
+			}
+			remaining -= len;
+		}
+	}
+
+	/**
+	 * @param a
+	 *            first index
+	 * @param b
+	 *            second index
+	 * @return dot product of coords a and coords b
+	 */
+	public double dotproduct(int a, int b) {
+		double[] pa = page(a), pb = page(b);
+		int oa = offset(a), ob = offset(b);
+		double res = 0;
+		for (int k = 0; k < dimension; k++) {
+			res += pa[oa + k] * pb[ob + k];
+		}
+		return res;
+	}
+
+	/**
+	 * set x, y, z of coords dest to coords a ^ coords b (cross product).
+	 * Attempt dimension to be at least 3.
+	 *
+	 * @param dest
+	 *            destination index
+	 * @param a
+	 *            first index
+	 * @param b
+	 *            second index
+	 */
+	public void setCrossProduct3(int dest, int a, int b) {
+		double[] pd = page(dest), pa = page(a), pb = page(b);
+		int od = offset(dest), oa = offset(a), ob = offset(b);
+		double ax = pa[oa], ay = pa[oa + 1], az = pa[oa + 2];
+		double bx = pb[ob], by = pb[ob + 1], bz = pb[ob + 2];
+		pd[od] = ay * bz - az * by;
+		pd[od + 1] = az * bx - ax * bz;
+		pd[od + 2] = ax * by - ay * bx;
+	}
+
+	/**
+	 * @param i
+	 *            index
+	 * @return square norm of coords i
+	 */
+	public double squareNorm(int i) {
+		return dotproduct(i, i);
+	}
+
+	/**
+	 * @param i
+	 *            index
+	 * @return norm of coords i
+	 */
+	public double norm(int i) {
+		return Math.sqrt(dotproduct(i, i));
+	}
+}
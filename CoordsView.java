@@ -0,0 +1,298 @@
+package org.geogebra.common.kernel.matrix;
+
+import org.geogebra.common.util.MyMath;
+
+/**
+ * View on coords stored in a shared double[] (not owned by the view), e.g.
+ * a polyline stored as {x0, y0, z0, x1, y1, z1, ...}. The view can be moved
+ * from one point to another in O(1), so that one view can walk all points.
+ *
+ * Values of current point are at backing[offset], ...,
+ * backing[offset + dimension - 1]; next point starts at offset + stride.
+ */
+public final class CoordsView {
+
+	private final int dimension;
+	private double[] backing;
+	private int start;
+	private int offset;
+	private int stride;
+	private Coords coords;
+
+	/**
+	 * @param dimension
+	 *            number of values for each point
+	 */
+	public CoordsView(int dimension) {
+		this.dimension = dimension;
+		this.stride = dimension;
+	}
+
+	/**
+	 * @param backing
+	 *            values
+	 * @param offset
+	 *            offset of first point
+	 * @param stride
+	 *            distance between two consecutive points
+	 * @return this
+	 */
+	public CoordsView retarget(double[] backing, int offset, int stride) {
+		this.backing = backing;
+		this.start = offset;
+		this.offset = offset;
+		this.stride = stride;
+		return this;
+	}
+
+	/**
+	 * move to point i
+	 *
+	 * @param i
+	 *            index of the point (0 for first)
+	 * @return this
+	 */
+	public CoordsView moveTo(int i) {
+		offset = start + i * stride;
+		return this;
+	}
+
+	/**
+	 * move to next point
+	 *
+	 * @return this
+	 */
+	public CoordsView next() {
+		offset += stride;
+		return this;
+	}
+
+	/**
+	 * @return number of values for each point
+	 */
+	public int getLength() {
+		return dimension;
+	}
+
+	/**
+	 * @param i
+	 *            number of the row (1 for x)
+	 * @return value
+	 */
+	public double get(int i) {
+		return backing[offset + i - 1];
+	}
+
+	/**
+	 * @param i
+	 *            number of the row (1 for x)
+	 * @param val0
+	 *            value
+	 */
+	public void set(int i, double val0) {
+		backing[offset + i - 1] = val0;
+	}
+
+	/**
+	 * @return x-coord
+	 */
+	public double getX() {
+		return backing[offset];
+	}
+
+	/**
+	 * @return y-coord
+	 */
+	public double getY() {
+		return backing[offset + 1];
+	}
+
+	/**
+	 * @return z-coord (0 for 2D points)
+	 */
+	public double getZ() {
+		return dimension > 2 ? backing[offset + 2] : 0;
+	}
+
+	/**
+	 * @return w-coord (0 if dimension is less than 4)
+	 */
+	public double getW() {
+		return dimension > 3 ? backing[offset + 3] : 0;
+	}
+
+	/**
+	 * @param val0
+	 *            x-coord
+	 */
+	public void setX(double val0) {
+		backing[offset] = val0;
+	}
+
+	/**
+	 * @param val0
+	 *            y-coord
+	 */
+	public void setY(double val0) {
+		backing[offset + 1] = val0;
+	}
+
+	/**
+	 * @param val0
+	 *            z-coord (ignored for 2D points)
+	 */
+	public void setZ(double val0) {
+		if (dimension > 2) {
+			backing[offset + 2] = val0;
+		}
+	}
+
+	/**
+	 * @param val0
+	 *            w-coord (ignored if dimension is less than 4)
+	 */
+	public void setW(double val0) {
+		if (dimension > 3) {
+			backing[offset + 3] = val0;
+		}
+	}
+
+	/**
+	 * set current point values to v ones
+	 *
+	 * @param v
+	 *            coords (length at least dimension)
+	 */
+	public void set(Coords v) {
+		for (int k = 0; k < dimension; k++) {
+			backing[offset + k] = v.val[k];
+		}
+	}
+
+	/**
+	 * @param ret
+	 *            output: current point values
+	 * @return ret
+	 */
+	public Coords copy(Coords ret) {
+		for (int k = 0; k < dimension; k++) {
+			ret.val[k] = backing[offset + k];
+		}
+		ret.setNormsToRecompute();
+		ret.markModified();
+		return ret;
+	}
+
+	/**
+	 * @return current point values, in a coords owned by this view (changes
+	 *         are not written back, use {@link #set(Coords)})
+	 */
+	public Coords getCoords() {
+		if (coords == null) {
+			coords = new Coords(dimension);
+		}
+		return copy(coords);
+	}
+
+	/**
+	 * @param v
+	 *            vector
+	 * @return dot product with v, on x, y, z (x, y for 2D points)
+	 */
+	public double dotproduct3(Coords v) {
+		double ret = backing[offset] * v.val[0]
+				+ backing[offset + 1] * v.val[1];
+		return dimension > 2 ? ret + backing[offset + 2] * v.val[2] : ret;
+	}
+
+	/**
+	 * @param v
+	 *            point
+	 * @return distance to v, on x, y, z (x, y for 2D points)
+	 */
+	public double distance3(Coords v) {
+		return MyMath.length(backing[offset] - v.val[0],
+				backing[offset + 1] - v.val[1],
+				dimension > 2 ? backing[offset + 2] - v.val[2] : 0);
+	}
+
+	/**
+	 * @param v
+	 *            point
+	 * @return square distance to v, on x, y, z (x, y for 2D points)
+	 */
+	public double squareDistance3(Coords v) {
+		double x = getX() - v.getX();
+		double y = getY() - v.getY();
+		double z = dimension > 2 ? getZ() - v.getZ() : 0;
+		return x * x + y * y + z * z;
+	}
+
+	/**
+	 * set current point to m * v
+	 *
+	 * @param m
+	 *            matrix
+	 * @param v
+	 *            vector
+	 * @return this
+	 */
+	public CoordsView setMul(CoordMatrix m, Coords v) {
+		int columns = m.getColumns();
+		for (int i = 1; i <= dimension; i++) {
+			double r = 0;
+			for (int n = 1; n <= columns; n++) {
+				r += m.get(i, n) * v.get(n);
+			}
+			backing[offset + i - 1] = r;
+		}
+		return this;
+	}
+
+	/**
+	 * set current point to m * (current point)
+	 *
+	 * @param m
+	 *            matrix (dimension x dimension)
+	 * @return this
+	 */
+	public CoordsView mulInside(CoordMatrix m) {
+		return setMul(m, getCoords());
+	}
+
+	/**
+	 * project current point on the plane, see
+	 * {@link Coords#projectPlane(CoordMatrix, Coords, Coords)}
+	 *
+	 * @param m
+	 *            matrix {v1 v2 v3 o} where (o,v1,v2) is a coord sys fo the
+	 *            plane, and v3 the direction used for projection
+	 * @param globalCoords
+	 *            output coords (global)
+	 * @param inPlaneCoords
+	 *            output coords (in plane)
+	 */
+	public void projectPlane(CoordMatrix m, Coords globalCoords,
+			Coords inPlaneCoords) {
+		getCoords().projectPlane(m, globalCoords, inPlaneCoords);
+	}
+
+	/**
+	 * project current point on the plane, see
+	 * {@link Coords#projectPlane(CoordMatrix, Coords)}
+	 *
+	 * @param m
+	 *            matrix {v1 v2 v3 o} where (o,v1,v2) is a coord sys fo the
+	 *            plane, and v3 the direction used for projection
+	 * @param globalCoords
+	 *            output coords (global)
+	 */
+	public void projectPlane(CoordMatrix m, Coords globalCoords) {
+		getCoords().projectPlane(m, globalCoords);
+	}
+
+	@Override
+	public String toString() {
+		return getCoords().toString();
+	}
+}
@@ -0,0 +1,94 @@
+package org.geogebra.common.kernel.matrix;
+
+/**
+ * Fast fixed-point formatting of doubles, appended directly to a
+ * {@link StringBuilder} (no allocation per number), e.g. to export many
+ * coords.
+ *
+ * Format is sign ('+' or '-'), integer part, then '.' and exactly precision
+ * decimals (rounded half up, ties decided on the scaled double); values
+ * whose integer part needs more than digits digits are written as sign
+ * followed by digits 'X'.
+ */
+public final class DecimalAppender {
+
+	/** max precision */
+	public static final int MAX_PRECISION = 18;
+
+	private static final long[] POWERS_OF_TEN = new long[19];
+
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+		}
+	}
+
+	private DecimalAppender() {
+		// utility class
+	}
+
+	/**
+	 * @param sb
+	 *            output
+	 * @param x
+	 *            value
+	 * @param digits
+	 *            max number of digits of integer part (at most 18)
+	 * @param precision
+	 *            number of decimals (at most {@link #MAX_PRECISION})
+	 * @return sb
+	 */
+	public static StringBuilder append(StringBuilder sb, double x, int digits,
+			int precision) {
+		if (Double.isNaN(x)) {
+			return sb.append("NaN");
+		}
+		double abs = Math.abs(x);
+		long max = POWERS_OF_TEN[digits];
+		if (abs >= max) {
+			sb.append(x < 0 ? '-' : '+');
+			for (int i = 0; i < digits; i++) {
+				sb.append('X');
+			}
+			return sb;
+		}
+		long integer = (long) abs;
+		long scale = POWERS_OF_TEN[precision];
+		// abs - integer is exact
+		long decimals = Math.round((abs - integer) * scale);
+		if (decimals >= scale) {
+			integer++;
+			decimals -= scale;
+			if (integer >= max) {
+				return append(sb, x < 0 ? -max : max, digits, precision);
+			}
+		}
+		sb.append(x < 0 && (integer != 0 || decimals != 0) ? '-' : '+');
+		appendDigits(sb, integer, 1);
+		if (precision > 0) {
+			sb.append('.');
+			appendDigits(sb, decimals, precision);
+		}
+		return sb;
+	}
+
+	/**
+	 * append value in base 10, left-padded with zeros to minLength
+	 */
+	private static void appendDigits(StringBuilder sb, long value,
+			int minLength) {
+		int length = 1;
+		while (length < 19 && value >= POWERS_OF_TEN[length]) {
+			length++;
+		}
+		length = Math.max(length, minLength);
+		int end = sb.length() + length;
+		sb.setLength(end);
+		long v = value;
+		for (int i = end - 1; i >= end - length; i--) {
+			sb.setCharAt(i, (char) ('0' + (int) (v % 10)));
+			v /= 10;
+		}
+	}
+}
@@ -0,0 +1,334 @@
+package org.geogebra.common.kernel.matrix;
+
+/**
+ * Forward-mode automatic differentiation counterpart of {@link Coords}: each
+ * coordinate carries its value and its derivatives with respect to a fixed
+ * number of variables (directions), so one evaluation gives both the value
+ * and the exact Jacobian (e.g. for Newton steps).
+ *
+ * Scalar results (dot product, norm) are written as {value, d_1, ..., d_n}
+ * into an array of length 1 + number of variables.
+ *
+ * As for {@link Coords}, indices are 1-based and set...() methods accept
+ * this as operand.
+ */
+public class DualCoords {
+
+	private final int length;
+	private final int variables;
+	private final double[] val;
+	/** derivative of coord i for variable k is der[k * length + i] */
+	private final double[] der;
+	private final double[] tmp;
+
+	/**
+	 * @param length
+	 *            number of coordinates
+	 * @param variables
+	 *            number of variables
+	 */
+	public DualCoords(int length, int variables) {
+		this.length = length;
+		this.variables = variables;
+		val = new double[length];
+		der = new double[length * variables];
+		tmp = new double[3 * (1 + variables)];
+	}
+
+	/**
+	 * @return number of coordinates
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * @return number of variables
+	 */
+	public int getVariables() {
+		return variables;
+	}
+
+	/**
+	 * @param i
+	 *            index (1 for first)
+	 * @return value of i-th coordinate
+	 */
+	public double getValue(int i) {
+		return val[i - 1];
+	}
+
+	/**
+	 * @param i
+	 *            index (1 for first)
+	 * @param k
+	 *            variable (1 for first)
+	 * @return derivative of i-th coordinate for k-th variable
+	 */
+	public double getDerivative(int i, int k) {
+		return der[(k - 1) * length + i - 1];
+	}
+
+	/**
+	 * set values (derivatives are set to 0: constant)
+	 *
+	 * @param v
+	 *            values (length at least this length)
+	 * @return this
+	 */
+	public DualCoords set(Coords v) {
+		System.arraycopy(v.val, 0, val, 0, length);
+		for (int j = 0; j < der.length; j++) {
+			der[j] = 0;
+		}
+		return this;
+	}
+
+	/**
+	 * @param v
+	 *            other (same length and variables)
+	 * @return this
+	 */
+	public DualCoords set(DualCoords v) {
+		System.arraycopy(v.val, 0, val, 0, length);
+		System.arraycopy(v.der, 0, der, 0, der.length);
+		return this;
+	}
+
+	/**
+	 * set derivatives for k-th variable
+	 *
+	 * @param k
+	 *            variable (1 for first)
+	 * @param d
+	 *            derivatives (length at least this length)
+	 * @return this
+	 */
+	public DualCoords setDerivative(int k, Coords d) {
+		System.arraycopy(d.val, 0, der, (k - 1) * length, length);
+		return this;
+	}
+
+	/**
+	 * set i-th coordinate to the k-th variable, with value x
+	 *
+	 * @param i
+	 *            index (1 for first)
+	 * @param k
+	 *            variable (1 for first)
+	 * @param x
+	 *            value
+	 * @return this
+	 */
+	public DualCoords setVariable(int i, int k, double x) {
+		val[i - 1] = x;
+		for (int l = 0; l < variables; l++) {
+			der[l * length + i - 1] = l == k - 1 ? 1 : 0;
+		}
+		return this;
+	}
+
+	/**
+	 * @param ret
+	 *            output: values
+	 * @return ret
+	 */
+	public Coords getValues(Coords ret) {
+		System.arraycopy(val, 0, ret.val, 0, length);
+		ret.setNormsToRecompute();
+		ret.markModified();
+		return ret;
+	}
+
+	/**
+	 * @param ret
+	 *            output: Jacobian (length rows, variables columns)
+	 * @return ret
+	 */
+	public CoordMatrix getJacobian(CoordMatrix ret) {
+		for (int k = 0; k < variables; k++) {
+			Coords column = ret.vectors[k];
+			System.arraycopy(der, k * length, column.val, 0, length);
+			column.setNormsToRecompute();
+			column.markModified();
+		}
+		return ret;
+	}
+
+	/**
+	 * @param v1
+	 *            first operand
+	 * @param v2
+	 *            second operand
+	 * @return this = v1 + v2
+	 */
+	public DualCoords setAdd(DualCoords v1, DualCoords v2) {
+		for (int i = 0; i < length; i++) {
+			val[i] = v1.val[i] + v2.val[i];
+		}
+		for (int j = 0; j < der.length; j++) {
+			der[j] = v1.der[j] + v2.der[j];
+		}
+		return this;
+	}
+
+	/**
+	 * @param v1
+	 *            first operand
+	 * @param v2
+	 *            second operand
+	 * @return this = v1 - v2
+	 */
+	public DualCoords setSub(DualCoords v1, DualCoords v2) {
+		for (int i = 0; i < length; i++) {
+			val[i] = v1.val[i] - v2.val[i];
+		}
+		for (int j = 0; j < der.length; j++) {
+			der[j] = v1.der[j] - v2.der[j];
+		}
+		return this;
+	}
+
+	/**
+	 * @param v
+	 *            operand
+	 * @param val0
+	 *            constant factor
+	 * @return this = v * val0
+	 */
+	public DualCoords setMul(DualCoords v, double val0) {
+		for (int i = 0; i < length; i++) {
+			val[i] = v.val[i] * val0;
+		}
+		for (int j = 0; j < der.length; j++) {
+			der[j] = v.der[j] * val0;
+		}
+		return this;
+	}
+
+	/**
+	 * @param v
+	 *            operand
+	 * @param s
+	 *            scalar {value, d_1, ..., d_n}
+	 * @return this = v * s
+	 */
+	public DualCoords setMul(DualCoords v, double[] s) {
+		for (int k = 0; k < variables; k++) {
+			int offset = k * length;
+			for (int i = 0; i < length; i++) {
+				der[offset + i] = v.der[offset + i] * s[0]
+						+ v.val[i] * s[k + 1];
+			}
+		}
+		for (int i = 0; i < length; i++) {
+			val[i] = v.val[i] * s[0];
+		}
+		return this;
+	}
+
+	/**
+	 * @param v1
+	 *            first operand (length at least 3)
+	 * @param v2
+	 *            second operand (length at least 3)
+	 * @return this = v1 ^ v2 (first 3 coords)
+	 */
+	public DualCoords setCrossProduct3(DualCoords v1, DualCoords v2) {
+		// compute in tmp first since this may be an operand
+		int n = variables + 1;
+		for (int c = 0; c < 3; c++) {
+			int i = (c + 1) % 3, j = (c + 2) % 3;
+			double[] a = v1.val, b = v2.val;
+			tmp[c * n] = a[i] * b[j] - a[j] * b[i];
+			for (int k = 0; k < variables; k++) {
+				int o1 = k * v1.length, o2 = k * v2.length;
+				tmp[c * n + k + 1] = v1.der[o1 + i] * b[j]
+						+ a[i] * v2.der[o2 + j] - v1.der[o1 + j] * b[i]
+						- a[j] * v2.der[o2 + i];
+			}
+		}
+		for (int c = 0; c < 3; c++) {
+			val[c] = tmp[c * n];
+			for (int k = 0; k < variables; k++) {
+				der[k * length + c] = tmp[c * n + k + 1];
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * @param v
+	 *            other (length at least 3, same variables)
+	 * @param ret
+	 *            output: this . v (first 3 coords) as {value, d_1, ...,
+	 *            d_n}
+	 * @return ret
+	 */
+	public double[] dotproduct3(DualCoords v, double[] ret) {
+		ret[0] = val[0] * v.val[0] + val[1] * v.val[1] + val[2] * v.val[2];
+		for (int k = 0; k < variables; k++) {
+			int o1 = k * length, o2 = k * v.length;
+			double d = 0;
+			for (int i = 0; i < 3; i++) {
+				d += der[o1 + i] * v.val[i] + val[i] * v.der[o2 + i];
+			}
+			ret[k + 1] = d;
+		}
+		return ret;
+	}
+
+	/**
+	 * @param ret
+	 *            output: square norm (all coords) as {value, d_1, ...,
+	 *            d_n}
+	 * @return ret
+	 */
+	public double[] squareNorm(double[] ret) {
+		double s = 0;
+		for (int i = 0; i < length; i++) {
+			s += val[i] * val[i];
+		}
+		ret[0] = s;
+		for (int k = 0; k < variables; k++) {
+			int offset = k * length;
+			double d = 0;
+			for (int i = 0; i < length; i++) {
+				d += val[i] * der[offset + i];
+			}
+			ret[k + 1] = 2 * d;
+		}
+		return ret;
+	}
+
+	/**
+	 * @param ret
+	 *            output: norm (all coords) as {value, d_1, ..., d_n}
+	 *            (derivatives are NaN for zero vector)
+	 * @return ret
+	 */
+	public double[] norm(double[] ret) {
+		squareNorm(ret);
+		double n = Math.sqrt(ret[0]);
+		ret[0] = n;
+		double f = 0.5 / n;
+		for (int k = 1; k <= variables; k++) {
+			ret[k] = n == 0 ? Double.NaN : ret[k] * f;
+		}
+		return ret;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder s = new StringBuilder("(");
+		for (int i = 0; i < length; i++) {
+			s.append(val[i]);
+			for (int k = 0; k < variables; k++) {
+				s.append(k == 0 ? " [" : ", ").append(der[k * length + i]);
+			}
+			s.append(variables > 0 ? "]" : "");
+			s.append(i == length - 1 ? ')' : ',');
+		}
+		return s.toString();
+	}
+}
@@ -0,0 +1,128 @@
+package org.geogebra.common.kernel.matrix;
+
+/**
+ * Writes whole collections of points or matrices into one float array (e.g.
+ * the array backing a GL buffer), in one pass and without intermediate
+ * arrays.
+ *
+ * Each method writes from a given offset and returns the offset after the
+ * last value written, so calls can be chained to fill one array.
+ */
+public final class GLExport {
+
+	private GLExport() {
+		// utility class
+	}
+
+	/**
+	 * write x, y, z of points[from..to-1]
+	 *
+	 * @param points
+	 *            points
+	 * @param from
+	 *            first point index
+	 * @param to
+	 *            last point index + 1
+	 * @param out
+	 *            output array
+	 * @param offset
+	 *            offset in out
+	 * @return offset after last value
+	 */
+	public static int put3(Coords[] points, int from, int to, float[] out,
+			int offset) {
+		int k = offset;
+		for (int i = from; i < to; i++) {
+			points[i].get3ForGL(out, k);
+			k += 3;
+		}
+		return k;
+	}
+
+	/**
+	 * write x, y, z, w of points[from..to-1]
+	 *
+	 * @param points
+	 *            points
+	 * @param from
+	 *            first point index
+	 * @param to
+	 *            last point index + 1
+	 * @param out
+	 *            output array
+	 * @param offset
+	 *            offset in out
+	 * @return offset after last value
+	 */
+	public static int put4(Coords[] points, int from, int to, float[] out,
+			int offset) {
+		int k = offset;
+		for (int i = from; i < to; i++) {
+			points[i].get4ForGL(out, k);
+			k += 4;
+		}
+		return k;
+	}
+
+	/**
+	 * write x, y, z (and w if withW) of all points of the buffer
+	 *
+	 * @param points
+	 *            points
+	 * @param withW
+	 *            whether to write w
+	 * @param out
+	 *            output array
+	 * @param offset
+	 *            offset in out
+	 * @return offset after last value
+	 */
+	public static int put(CoordsBuffer points, boolean withW, float[] out,
+			int offset) {
+		int n = points.size();
+		int k = offset;
+		double[] x = points.x, y = points.y, z = points.z, w = points.w;
+		if (withW) {
+			for (int i = 0; i < n; i++) {
+				out[k] = (float) x[i];
+				out[k + 1] = (float) y[i];
+				out[k + 2] = (float) z[i];
+				out[k + 3] = (float) w[i];
+				k += 4;
+			}
+		} else {
+			for (int i = 0; i < n; i++) {
+				out[k] = (float) x[i];
+				out[k + 1] = (float) y[i];
+				out[k + 2] = (float) z[i];
+				k += 3;
+			}
+		}
+		return k;
+	}
+
+	/**
+	 * write matrices[from..to-1] in openGL format (see
+	 * {@link CoordMatrix#getForGL(float[])})
+	 *
+	 * @param matrices
+	 *            matrices
+	 * @param from
+	 *            first matrix index
+	 * @param to
+	 *            last matrix index + 1
+	 * @param out
+	 *            output array
+	 * @param offset
+	 *            offset in out
+	 * @return offset after last value
+	 */
+	public static int put(CoordMatrix[] matrices, int from, int to,
+			float[] out, int offset) {
+		int k = offset;
+		for (int i = from; i < to; i++) {
+			k = matrices[i].getForGL(out, k);
+		}
+		return k;
+	}
+}
@@ -0,0 +1,334 @@
+package org.geogebra.common.kernel.matrix;
+
+/**
+ * Adaptive-precision geometric predicates (after J. R. Shewchuk, "Adaptive
+ * Precision Floating-Point Arithmetic and Fast Robust Geometric
+ * Predicates"): the sign of the result is always exact.
+ *
+ * Each predicate first computes the value with floating-point arithmetic
+ * and an error bound; only if the bound can't decide the sign, the value is
+ * computed exactly as a floating-point expansion (sum of non-overlapping
+ * doubles), from exact products (see {@link AccurateKernels}).
+ *
+ * Results are exact as long as no overflow nor underflow happens.
+ */
+public final class GeometricPredicates {
+
+	private static final double EPSILON = 1.1102230246251565E-16; // 2^-53
+	private static final double ORIENT_2D_ERROR_BOUND = (3.0
+			+ 16.0 * EPSILON) * EPSILON;
+	private static final double ORIENT_3D_ERROR_BOUND = (7.0
+			+ 56.0 * EPSILON) * EPSILON;
+	private static final double DET_3_ERROR_BOUND = ORIENT_3D_ERROR_BOUND;
+	private static final double PRODUCTS_ERROR_BOUND = ORIENT_2D_ERROR_BOUND;
+
+	private GeometricPredicates() {
+		// utility class
+	}
+
+	/**
+	 * @param ax
+	 *            a x
+	 * @param ay
+	 *            a y
+	 * @param bx
+	 *            b x
+	 * @param by
+	 *            b y
+	 * @param cx
+	 *            c x
+	 * @param cy
+	 *            c y
+	 * @return positive if (a, b, c) is counterclockwise, negative if
+	 *         clockwise, 0 if collinear (approximation of twice the signed
+	 *         area, with exact sign)
+	 */
+	public static double orient2d(double ax, double ay, double bx, double by,
+			double cx, double cy) {
+		double detLeft = (ax - cx) * (by - cy);
+		double detRight = (ay - cy) * (bx - cx);
+		double det = detLeft - detRight;
+		double detSum;
+		if (detLeft > 0) {
+			if (detRight <= 0) {
+				return det;
+			}
+			detSum = detLeft + detRight;
+		} else if (detLeft < 0) {
+			if (detRight >= 0) {
+				return det;
+			}
+			detSum = -detLeft - detRight;
+		} else {
+			return det;
+		}
+		double errBound = ORIENT_2D_ERROR_BOUND * detSum;
+		if (det >= errBound || -det >= errBound) {
+			return det;
+		}
+		return orient2dExact(ax, ay, bx, by, cx, cy);
+	}
+
+	/**
+	 * @param ax
+	 *            a x
+	 * @param ay
+	 *            a y
+	 * @param az
+	 *            a z
+	 * @param bx
+	 *            b x
+	 * @param by
+	 *            b y
+	 * @param bz
+	 *            b z
+	 * @param cx
+	 *            c x
+	 * @param cy
+	 *            c y
+	 * @param cz
+	 *            c z
+	 * @param dx
+	 *            d x
+	 * @param dy
+	 *            d y
+	 * @param dz
+	 *            d z
+	 * @return determinant (a - d, b - d, c - d), with exact sign: positive if
+	 *         d is below the plane (a, b, c) ((a, b, c) counterclockwise seen
+	 *         from above), negative if above, 0 if coplanar
+	 */
+	public static double orient3d(double ax, double ay, double az, double bx,
+			double by, double bz, double cx, double cy, double cz, double dx,
+			double dy, double dz) {
+		double adx = ax - dx, ady = ay - dy, adz = az - dz;
+		double bdx = bx - dx, bdy = by - dy, bdz = bz - dz;
+		double cdx = cx - dx, cdy = cy - dy, cdz = cz - dz;
+
+		double bdxcdy = bdx * cdy;
+		double cdxbdy = cdx * bdy;
+		double cdxady = cdx * ady;
+		double adxcdy = adx * cdy;
+		double adxbdy = adx * bdy;
+		double bdxady = bdx * ady;
+
+		double det = adz * (bdxcdy - cdxbdy) + bdz * (cdxady - adxcdy)
+				+ cdz * (adxbdy - bdxady);
+		double permanent = (Math.abs(bdxcdy) + Math.abs(cdxbdy))
+				* Math.abs(adz)
+				+ (Math.abs(cdxady) + Math.abs(adxcdy)) * Math.abs(bdz)
+				+ (Math.abs(adxbdy) + Math.abs(bdxady)) * Math.abs(cdz);
+		double errBound = ORIENT_3D_ERROR_BOUND * permanent;
+		if (det > errBound || -det > errBound) {
+			return det;
+		}
+		return orient3dExact(ax, ay, az, bx, by, bz, cx, cy, cz, dx, dy, dz);
+	}
+
+	/**
+	 * @param a
+	 *            point (x, y, z, ...)
+	 * @param b
+	 *            point (x, y, z, ...)
+	 * @param c
+	 *            point (x, y, z, ...)
+	 * @param d
+	 *            point (x, y, z, ...)
+	 * @return orient3d of (a, b, c, d) inhomogeneous x, y, z coords
+	 */
+	public static double orient3d(Coords a, Coords b, Coords c, Coords d) {
+		return orient3d(a.val[0], a.val[1], a.val[2], b.val[0], b.val[1],
+				b.val[2], c.val[0], c.val[1], c.val[2], d.val[0], d.val[1],
+				d.val[2]);
+	}
+
+	/**
+	 * @param a
+	 *            point (x, y, z)
+	 * @param b
+	 *            point (x, y, z)
+	 * @param c
+	 *            point (x, y, z)
+	 * @return true if a, b, c are exactly collinear
+	 */
+	public static boolean isCollinear(Coords a, Coords b, Coords c) {
+		double[] u = a.val, v = b.val, w = c.val;
+		return orient2d(u[0], u[1], v[0], v[1], w[0], w[1]) == 0
+				&& orient2d(u[1], u[2], v[1], v[2], w[1], w[2]) == 0
+				&& orient2d(u[2], u[0], v[2], v[0], w[2], w[0]) == 0;
+	}
+
+	/**
+	 * @param a
+	 *            point (x, y, z)
+	 * @param b
+	 *            point (x, y, z)
+	 * @param c
+	 *            point (x, y, z)
+	 * @param d
+	 *            point (x, y, z)
+	 * @return true if a, b, c, d are exactly coplanar
+	 */
+	public static boolean isCoplanar(Coords a, Coords b, Coords c, Coords d) {
+		return orient3d(a, b, c, d) == 0;
+	}
+
+	/**
+	 * @param a
+	 *            a
+	 * @param b
+	 *            b
+	 * @param c
+	 *            c
+	 * @param d
+	 *            d
+	 * @return a * b - c * d, with exact sign
+	 */
+	public static double diffOfProducts(double a, double b, double c,
+			double d) {
+		double p = a * b;
+		double q = c * d;
+		double det = p - q;
+		double errBound = PRODUCTS_ERROR_BOUND * (Math.abs(p) + Math.abs(q));
+		if (det > errBound || -det > errBound) {
+			return det;
+		}
+		double[] e = new double[4];
+		int n = growProduct(e, 0, a, b);
+		n = growProduct(e, n, -c, d);
+		return estimate(e, n);
+	}
+
+	/**
+	 * @param u
+	 *            vector (x, y, z)
+	 * @param v
+	 *            vector (x, y, z)
+	 * @param w
+	 *            vector (x, y, z)
+	 * @return u . (v ^ w), with exact sign
+	 */
+	public static double det3(Coords u, Coords v, Coords w) {
+		double[] a = u.val, b = v.val, c = w.val;
+		double bc0a = b[1] * c[2], bc0b = b[2] * c[1];
+		double bc1a = b[2] * c[0], bc1b = b[0] * c[2];
+		double bc2a = b[0] * c[1], bc2b = b[1] * c[0];
+		double det = a[0] * (bc0a - bc0b) + a[1] * (bc1a - bc1b)
+				+ a[2] * (bc2a - bc2b);
+		double permanent = (Math.abs(bc0a) + Math.abs(bc0b)) * Math.abs(a[0])
+				+ (Math.abs(bc1a) + Math.abs(bc1b)) * Math.abs(a[1])
+				+ (Math.abs(bc2a) + Math.abs(bc2b)) * Math.abs(a[2]);
+		double errBound = DET_3_ERROR_BOUND * permanent;
+		if (det > errBound || -det > errBound) {
+			return det;
+		}
+		double[] e = new double[25];
+		int n = growDet3(e, 0, a[0], a[1], a[2], b[0], b[1], b[2], c[0], c[1],
+				c[2], 1);
+		return estimate(e, n);
+	}
+
+	private static double orient2dExact(double ax, double ay, double bx,
+			double by, double cx, double cy) {
+		// det(a, b) - det(a, c) + det(b, c)
+		double[] e = new double[13];
+		int n = growProduct(e, 0, ax, by);
+		n = growProduct(e, n, -ay, bx);
+		n = growProduct(e, n, -ax, cy);
+		n = growProduct(e, n, ay, cx);
+		n = growProduct(e, n, bx, cy);
+		n = growProduct(e, n, -by, cx);
+		return estimate(e, n);
+	}
+
+	private static double orient3dExact(double ax, double ay, double az,
+			double bx, double by, double bz, double cx, double cy, double cz,
+			double dx, double dy, double dz) {
+		// -det(b, c, d) + det(a, c, d) - det(a, b, d) + det(a, b, c)
+		double[] e = new double[97];
+		int n = growDet3(e, 0, bx, by, bz, cx, cy, cz, dx, dy, dz, -1);
+		n = growDet3(e, n, ax, ay, az, cx, cy, cz, dx, dy, dz, 1);
+		n = growDet3(e, n, ax, ay, az, bx, by, bz, dx, dy, dz, -1);
+		n = growDet3(e, n, ax, ay, az, bx, by, bz, cx, cy, cz, 1);
+		return estimate(e, n);
+	}
+
+	/**
+	 * add sign * det(p, q, r) (rows) to expansion e
+	 */
+	private static int growDet3(double[] e, int n, double px, double py,
+			double pz, double qx, double qy, double qz, double rx, double ry,
+			double rz, double sign) {
+		int ret = n;
+		ret = growProduct(e, ret, sign * px, qy, rz);
+		ret = growProduct(e, ret, -sign * px, qz, ry);
+		ret = growProduct(e, ret, sign * py, qz, rx);
+		ret = growProduct(e, ret, -sign * py, qx, rz);
+		ret = growProduct(e, ret, sign * pz, qx, ry);
+		ret = growProduct(e, ret, -sign * pz, qy, rx);
+		return ret;
+	}
+
+	/**
+	 * add exact a * b to expansion e
+	 */
+	private static int growProduct(double[] e, int n, double a, double b) {
+		double p = a * b;
+		int ret = grow(e, n, AccurateKernels.productError(a, b, p));
+		return grow(e, ret, p);
+	}
+
+	/**
+	 * add exact a * b * c to expansion e
+	 */
+	private static int growProduct(double[] e, int n, double a, double b,
+			double c) {
+		double h = a * b;
+		double l = AccurateKernels.productError(a, b, h);
+		int ret = growProduct(e, n, l, c);
+		return growProduct(e, ret, h, c);
+	}
+
+	/**
+	 * Shewchuk's Grow-Expansion with zero elimination: add b to expansion
+	 * e[0..n-1] (in increasing magnitude order), in place
+	 *
+	 * @return new length of e
+	 */
+	private static int grow(double[] e, int n, double b) {
+		if (b == 0) {
+			return n;
+		}
+		double q = b;
+		int h = 0;
+		for (int i = 0; i < n; i++) {
+			double ei = e[i];
+			double sum = q + ei;
+			double err = AccurateKernels.sumError(q, ei, sum);
+			q = sum;
+			if (err != 0) {
+				e[h++] = err;
+			}
+		}
+		if (q != 0 || h == 0) {
+			e[h++] = q;
+		}
+		return h;
+	}
+
+	/**
+	 * @return approximation of the expansion, with the sign of the expansion
+	 *         (sign of its most significant component)
+	 */
+	private static double estimate(double[] e, int n) {
+		double ret = 0;
+		for (int i = 0; i < n; i++) {
+			ret += e[i];
+		}
+		if (n > 0 && Math.signum(ret) != Math.signum(e[n - 1])) {
+			// should not happen: use most significant component
+			return e[n - 1];
+		}
+		return ret;
+	}
+}
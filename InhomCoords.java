@@ -0,0 +1,313 @@
+package org.geogebra.common.kernel.matrix;
+
+import org.geogebra.common.util.DoubleUtil;
+
+/**
+ * Bulk conversions of homogeneous coords (x, y, (z,) w) to inhomogeneous
+ * coords (x/w, y/w, (z/w)) written into flat arrays, without creating a
+ * {@link Coords} for each point (see {@link Coords#getInhomCoords()}).
+ *
+ * Points at infinity (w = 0 for kernel precision) are flagged in a bitmap
+ * (bit i % 32 of infinite[i / 32] for point i); for them the direction
+ * (x, y, (z)) is written instead, i.e. the homogeneous coords without w
+ * (unlike {@link Coords#projectInfDim()}, which replaces the last direction
+ * coord by w).
+ */
+public final class InhomCoords {
+
+	private InhomCoords() {
+		// utility class
+	}
+
+	/**
+	 * @param infinite
+	 *            bitmap
+	 * @param i
+	 *            point index
+	 * @return whether point i is flagged at infinity
+	 */
+	public static boolean isInfinite(int[] infinite, int i) {
+		return (infinite[i >>> 5] & (1 << (i & 31))) != 0;
+	}
+
+	/**
+	 * @param n
+	 *            number of points
+	 * @return length of bitmap needed for n points
+	 */
+	public static int bitmapLength(int n) {
+		return (n + 31) >>> 5;
+	}
+
+	/**
+	 * write inhomogeneous coords of points[from..to-1] (all with same
+	 * length)
+	 *
+	 * @param points
+	 *            homogeneous points
+	 * @param from
+	 *            first point index
+	 * @param to
+	 *            last point index + 1
+	 * @param out
+	 *            output: {x0, y0, (z0,) x1, ...}
+	 * @param outOffset
+	 *            offset of first point in out
+	 * @param infinite
+	 *            output: bitmap of points at infinity (bit i for
+	 *            points[from + i]); may be null
+	 * @return number of points at infinity
+	 */
+	public static int toInhom(Coords[] points, int from, int to, double[] out,
+			int outOffset, int[] infinite) {
+		clear(infinite, to - from);
+		int count = 0;
+		int k = outOffset;
+		for (int i = from; i < to; i++) {
+			double[] v = points[i].val;
+			int last = v.length - 1;
+			if (write(v, 0, last, out, k)) {
+				count += flag(infinite, i - from);
+			}
+			k += last;
+		}
+		return count;
+	}
+
+	/**
+	 * write inhomogeneous coords of points[from..to-1] (all with same
+	 * length)
+	 *
+	 * @param points
+	 *            homogeneous points
+	 * @param from
+	 *            first point index
+	 * @param to
+	 *            last point index + 1
+	 * @param out
+	 *            output: {x0, y0, (z0,) x1, ...}
+	 * @param outOffset
+	 *            offset of first point in out
+	 * @param infinite
+	 *            output: bitmap of points at infinity (bit i for
+	 *            points[from + i]); may be null
+	 * @return number of points at infinity
+	 */
+	public static int toInhom(Coords[] points, int from, int to, float[] out,
+			int outOffset, int[] infinite) {
+		clear(infinite, to - from);
+		int count = 0;
+		int k = outOffset;
+		for (int i = from; i < to; i++) {
+			double[] v = points[i].val;
+			int last = v.length - 1;
+			if (write(v, 0, last, out, k)) {
+				count += flag(infinite, i - from);
+			}
+			k += last;
+		}
+		return count;
+	}
+
+	/**
+	 * write inhomogeneous coords of n points stored as {x0, y0, (z0,) w0,
+	 * x1, ...}
+	 *
+	 * @param values
+	 *            homogeneous points
+	 * @param n
+	 *            number of points
+	 * @param dimension
+	 *            length of each homogeneous point (3 for 2D, 4 for 3D)
+	 * @param out
+	 *            output: {x0, y0, (z0,) x1, ...}
+	 * @param outOffset
+	 *            offset of first point in out
+	 * @param infinite
+	 *            output: bitmap of points at infinity; may be null
+	 * @return number of points at infinity
+	 */
+	public static int toInhom(double[] values, int n, int dimension,
+			double[] out, int outOffset, int[] infinite) {
+		clear(infinite, n);
+		int count = 0;
+		int last = dimension - 1;
+		int k = outOffset;
+		for (int i = 0, start = 0; i < n; i++, start += dimension) {
+			if (write(values, start, last, out, k)) {
+				count += flag(infinite, i);
+			}
+			k += last;
+		}
+		return count;
+	}
+
+	/**
+	 * write inhomogeneous coords of n points stored as {x0, y0, (z0,) w0,
+	 * x1, ...}
+	 *
+	 * @param values
+	 *            homogeneous points
+	 * @param n
+	 *            number of points
+	 * @param dimension
+	 *            length of each homogeneous point (3 for 2D, 4 for 3D)
+	 * @param out
+	 *            output: {x0, y0, (z0,) x1, ...}
+	 * @param outOffset
+	 *            offset of first point in out
+	 * @param infinite
+	 *            output: bitmap of points at infinity; may be null
+	 * @return number of points at infinity
+	 */
+	public static int toInhom(double[] values, int n, int dimension,
+			float[] out, int outOffset, int[] infinite) {
+		clear(infinite, n);
+		int count = 0;
+		int last = dimension - 1;
+		int k = outOffset;
+		for (int i = 0, start = 0; i < n; i++, start += dimension) {
+			if (write(values, start, last, out, k)) {
+				count += flag(infinite, i);
+			}
+			k += last;
+		}
+		return count;
+	}
+
+	/**
+	 * write inhomogeneous coords (x/w, y/w, z/w) of all points of the
+	 * buffer
+	 *
+	 * @param points
+	 *            homogeneous points (x, y, z, w)
+	 * @param out
+	 *            output: {x0, y0, z0, x1, ...}
+	 * @param outOffset
+	 *            offset of first point in out
+	 * @param infinite
+	 *            output: bitmap of points at infinity; may be null
+	 * @return number of points at infinity
+	 */
+	public static int toInhom(CoordsBuffer points, float[] out, int outOffset,
+			int[] infinite) {
+		int n = points.size();
+		clear(infinite, n);
+		int count = 0;
+		int k = outOffset;
+		for (int i = 0; i < n; i++) {
+			if (write(points.x[i], points.y[i], points.z[i], points.w[i], out,
+					k)) {
+				count += flag(infinite, i);
+			}
+			k += 3;
+		}
+		return count;
+	}
+
+	/**
+	 * write inhomogeneous coords (x/w, y/w, z/w) of all points of the
+	 * buffer
+	 *
+	 * @param points
+	 *            homogeneous points (x, y, z, w)
+	 * @param out
+	 *            output: {x0, y0, z0, x1, ...}
+	 * @param outOffset
+	 *            offset of first point in out
+	 * @param infinite
+	 *            output: bitmap of points at infinity; may be null
+	 * @return number of points at infinity
+	 */
+	public static int toInhom(CoordsBuffer points, double[] out,
+			int outOffset, int[] infinite) {
+		int n = points.size();
+		clear(infinite, n);
+		int count = 0;
+		int k = outOffset;
+		for (int i = 0; i < n; i++) {
+			if (write(points.x[i], points.y[i], points.z[i], points.w[i], out,
+					k)) {
+				count += flag(infinite, i);
+			}
+			k += 3;
+		}
+		return count;
+	}
+
+	/**
+	 * write values[start..start+last-1] divided by values[start+last] (or
+	 * not divided if it is zero) into out[k..k+last-1]
+	 *
+	 * @return whether the point is at infinity
+	 */
+	private static boolean write(double[] values, int start, int last,
+			double[] out, int k) {
+		double w = values[start + last];
+		boolean infinite = DoubleUtil.isZero(w);
+		double wdiv = infinite ? 1 : 1 / w;
+		for (int j = 0; j < last; j++) {
+			out[k + j] = values[start + j] * wdiv;
+		}
+		return infinite;
+	}
+
+	/**
+	 * float version of {@link #write(double[], int, int, double[], int)}
+	 */
+	private static boolean write(double[] values, int start, int last,
+			float[] out, int k) {
+		double w = values[start + last];
+		boolean infinite = DoubleUtil.isZero(w);
+		double wdiv = infinite ? 1 : 1 / w;
+		for (int j = 0; j < last; j++) {
+			out[k + j] = (float) (values[start + j] * wdiv);
+		}
+		return infinite;
+	}
+
+	/**
+	 * write (x, y, z) divided by w (or not divided if w is zero) into
+	 * out[k..k+2]
+	 *
+	 * @return whether the point is at infinity
+	 */
+	private static boolean write(double x, double y, double z, double w,
+			double[] out, int k) {
+		boolean infinite = DoubleUtil.isZero(w);
+		double wdiv = infinite ? 1 : 1 / w;
+		out[k] = x * wdiv;
+		out[k + 1] = y * wdiv;
+		out[k + 2] = z * wdiv;
+		return infinite;
+	}
+
+	/**
+	 * float version of
+	 * {@link #write(double, double, double, double, double[], int)}
+	 */
+	private static boolean write(double x, double y, double z, double w,
+			float[] out, int k) {
+		boolean infinite = DoubleUtil.isZero(w);
+		double wdiv = infinite ? 1 : 1 / w;
+		out[k] = (float) (x * wdiv);
+		out[k + 1] = (float) (y * wdiv);
+		out[k + 2] = (float) (z * wdiv);
+		return infinite;
+	}
+
+	private static void clear(int[] infinite, int n) {
+		if (infinite != null) {
+			for (int i = bitmapLength(n) - 1; i >= 0; i--) {
+				infinite[i] = 0;
+			}
+		}
+	}
+
+	private static int flag(int[] infinite, int i) {
+		if (infinite != null) {
+			infinite[i >>> 5] |= 1 << (i & 31);
+		}
+		return 1;
+	}
+}
@@ -0,0 +1,340 @@
+package org.geogebra.common.kernel.matrix;
+
+/**
+ * Interval counterpart of {@link Coords}: each coordinate is an interval
+ * [lo, hi]. Operations round outward (bounds are moved one ulp away), so
+ * results always contain the exact results for any coords within the
+ * operands, e.g. to exclude a whole parameter range or view tile from a
+ * root search with one evaluation.
+ *
+ * As for {@link Coords}, indices are 1-based and set...() methods accept
+ * this as operand.
+ */
+public class IntervalCoords {
+
+	private final double[] lo;
+	private final double[] hi;
+
+	/**
+	 * @param length
+	 *            number of coordinates, all set to [0, 0]
+	 */
+	public IntervalCoords(int length) {
+		lo = new double[length];
+		hi = new double[length];
+	}
+
+	/**
+	 * @return number of coordinates
+	 */
+	public int getLength() {
+		return lo.length;
+	}
+
+	/**
+	 * @param i
+	 *            index (1 for first)
+	 * @return lower bound of i-th coordinate
+	 */
+	public double getLo(int i) {
+		return lo[i - 1];
+	}
+
+	/**
+	 * @param i
+	 *            index (1 for first)
+	 * @return upper bound of i-th coordinate
+	 */
+	public double getHi(int i) {
+		return hi[i - 1];
+	}
+
+	/**
+	 * @param i
+	 *            index (1 for first)
+	 * @param low
+	 *            lower bound
+	 * @param high
+	 *            upper bound
+	 * @return this
+	 */
+	public IntervalCoords set(int i, double low, double high) {
+		lo[i - 1] = low;
+		hi[i - 1] = high;
+		return this;
+	}
+
+	/**
+	 * set to degenerate intervals [v_i, v_i]
+	 *
+	 * @param v
+	 *            coords (same length)
+	 * @return this
+	 */
+	public IntervalCoords set(Coords v) {
+		for (int i = 0; i < lo.length; i++) {
+			lo[i] = v.val[i];
+			hi[i] = v.val[i];
+		}
+		return this;
+	}
+
+	/**
+	 * set to the box containing v1 and v2
+	 *
+	 * @param v1
+	 *            first corner (same length)
+	 * @param v2
+	 *            second corner (same length)
+	 * @return this
+	 */
+	public IntervalCoords set(Coords v1, Coords v2) {
+		for (int i = 0; i < lo.length; i++) {
+			lo[i] = Math.min(v1.val[i], v2.val[i]);
+			hi[i] = Math.max(v1.val[i], v2.val[i]);
+		}
+		return this;
+	}
+
+	/**
+	 * @param v
+	 *            other intervals
+	 * @return this
+	 */
+	public IntervalCoords set(IntervalCoords v) {
+		System.arraycopy(v.lo, 0, lo, 0, lo.length);
+		System.arraycopy(v.hi, 0, hi, 0, hi.length);
+		return this;
+	}
+
+	/**
+	 * @param v1
+	 *            first operand
+	 * @param v2
+	 *            second operand
+	 * @return this = v1 + v2
+	 */
+	public IntervalCoords setAdd(IntervalCoords v1, IntervalCoords v2) {
+		for (int i = 0; i < lo.length; i++) {
+			lo[i] = Math.nextDown(v1.lo[i] + v2.lo[i]);
+			hi[i] = Math.nextUp(v1.hi[i] + v2.hi[i]);
+		}
+		return this;
+	}
+
+	/**
+	 * @param v1
+	 *            first operand
+	 * @param v2
+	 *            second operand
+	 * @return this = v1 - v2
+	 */
+	public IntervalCoords setSub(IntervalCoords v1, IntervalCoords v2) {
+		for (int i = 0; i < lo.length; i++) {
+			double low = v1.lo[i] - v2.hi[i];
+			hi[i] = Math.nextUp(v1.hi[i] - v2.lo[i]);
+			lo[i] = Math.nextDown(low);
+		}
+		return this;
+	}
+
+	/**
+	 * @param v
+	 *            intervals
+	 * @param val0
+	 *            factor
+	 * @return this = v * val0
+	 */
+	public IntervalCoords setMul(IntervalCoords v, double val0) {
+		return setMul(v, val0, val0);
+	}
+
+	/**
+	 * @param v
+	 *            intervals
+	 * @param low
+	 *            factor lower bound
+	 * @param high
+	 *            factor upper bound
+	 * @return this = v * [low, high]
+	 */
+	public IntervalCoords setMul(IntervalCoords v, double low, double high) {
+		for (int i = 0; i < lo.length; i++) {
+			double a = v.lo[i], b = v.hi[i];
+			lo[i] = mulLo(a, b, low, high);
+			hi[i] = mulHi(a, b, low, high);
+		}
+		return this;
+	}
+
+	/**
+	 * @param v1
+	 *            first operand (length at least 3)
+	 * @param v2
+	 *            second operand (length at least 3)
+	 * @return this = v1 ^ v2 (first 3 coords)
+	 */
+	public IntervalCoords setCrossProduct3(IntervalCoords v1,
+			IntervalCoords v2) {
+		double xlo = subLo(v1, v2, 1, 2), xhi = subHi(v1, v2, 1, 2);
+		double ylo = subLo(v1, v2, 2, 0), yhi = subHi(v1, v2, 2, 0);
+		double zlo = subLo(v1, v2, 0, 1), zhi = subHi(v1, v2, 0, 1);
+		lo[0] = xlo;
+		hi[0] = xhi;
+		lo[1] = ylo;
+		hi[1] = yhi;
+		lo[2] = zlo;
+		hi[2] = zhi;
+		return this;
+	}
+
+	/**
+	 * @param v
+	 *            other intervals (length at least 3)
+	 * @param ret
+	 *            output: {lo, hi} of this . v (first 3 coords)
+	 * @return ret
+	 */
+	public double[] dotproduct3(IntervalCoords v, double[] ret) {
+		double low = 0, high = 0;
+		for (int i = 0; i < 3; i++) {
+			low = Math.nextDown(
+					low + mulLo(lo[i], hi[i], v.lo[i], v.hi[i]));
+			high = Math.nextUp(
+					high + mulHi(lo[i], hi[i], v.lo[i], v.hi[i]));
+		}
+		ret[0] = low;
+		ret[1] = high;
+		return ret;
+	}
+
+	/**
+	 * @param ret
+	 *            output: {lo, hi} of the square norm (all coords)
+	 * @return ret
+	 */
+	public double[] getSquareNorm(double[] ret) {
+		double low = 0, high = 0;
+		for (int i = 0; i < lo.length; i++) {
+			double a = lo[i], b = hi[i];
+			// min and max of |x| for x in [a, b]
+			double n = a > 0 ? a : (b < 0 ? -b : 0);
+			double m = Math.max(-a, b);
+			if (n > 0) {
+				low = Math.nextDown(low + Math.nextDown(n * n));
+			}
+			high = Math.nextUp(high + Math.nextUp(m * m));
+		}
+		ret[0] = Math.max(0, low);
+		ret[1] = high;
+		return ret;
+	}
+
+	/**
+	 * @param ret
+	 *            output: {lo, hi} of the norm (all coords)
+	 * @return ret
+	 */
+	public double[] getNorm(double[] ret) {
+		getSquareNorm(ret);
+		ret[0] = Math.max(0, Math.nextDown(Math.sqrt(ret[0])));
+		ret[1] = Math.nextUp(Math.sqrt(ret[1]));
+		return ret;
+	}
+
+	/**
+	 * @param v
+	 *            coords (same length)
+	 * @return whether v is in the box
+	 */
+	public boolean contains(Coords v) {
+		for (int i = 0; i < lo.length; i++) {
+			double x = v.val[i];
+			if (!(lo[i] <= x && x <= hi[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return whether every interval contains 0 (if false, this can't be
+	 *         the zero vector: e.g. no root in the evaluated range)
+	 */
+	public boolean containsZero() {
+		for (int i = 0; i < lo.length; i++) {
+			if (!(lo[i] <= 0 && 0 <= hi[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param v
+	 *            other intervals (same length)
+	 * @return whether the boxes intersect
+	 */
+	public boolean intersects(IntervalCoords v) {
+		for (int i = 0; i < lo.length; i++) {
+			if (!(lo[i] <= v.hi[i] && v.lo[i] <= hi[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * lower bound of v1[i] v2[j] - v1[j] v2[i]
+	 */
+	private static double subLo(IntervalCoords v1, IntervalCoords v2, int i,
+			int j) {
+		return Math.nextDown(
+				mulLo(v1.lo[i], v1.hi[i], v2.lo[j], v2.hi[j])
+						- mulHi(v1.lo[j], v1.hi[j], v2.lo[i], v2.hi[i]));
+	}
+
+	/**
+	 * upper bound of v1[i] v2[j] - v1[j] v2[i]
+	 */
+	private static double subHi(IntervalCoords v1, IntervalCoords v2, int i,
+			int j) {
+		return Math.nextUp(
+				mulHi(v1.lo[i], v1.hi[i], v2.lo[j], v2.hi[j])
+						- mulLo(v1.lo[j], v1.hi[j], v2.lo[i], v2.hi[i]));
+	}
+
+	/**
+	 * @return lower bound of [a, b] * [c, d]
+	 */
+	private static double mulLo(double a, double b, double c, double d) {
+		return Math.nextDown(Math.min(Math.min(product(a, c), product(a, d)),
+				Math.min(product(b, c), product(b, d))));
+	}
+
+	/**
+	 * @return upper bound of [a, b] * [c, d]
+	 */
+	private static double mulHi(double a, double b, double c, double d) {
+		return Math.nextUp(Math.max(Math.max(product(a, c), product(a, d)),
+				Math.max(product(b, c), product(b, d))));
+	}
+
+	/**
+	 * product with 0 * infinity = 0 (bounds, not values)
+	 */
+	private static double product(double x, double y) {
+		return x == 0 || y == 0 ? 0 : x * y;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder s = new StringBuilder("(");
+		for (int i = 0; i < lo.length; i++) {
+			s.append('[').append(lo[i]).append(", ").append(hi[i])
+					.append(']');
+			s.append(i == lo.length - 1 ? ')' : ',');
+		}
+		return s.toString();
+	}
+}
@@ -0,0 +1,306 @@
+package org.geogebra.common.kernel.matrix;
+
+import org.geogebra.common.kernel.Kernel;
+import org.geogebra.common.util.DoubleUtil;
+
+/**
+ * Projects many points on the same line (o, v). The normalized direction is
+ * computed once, then each point only costs one dot product (see
+ * {@link Coords#projectLine(Coords, Coords, Coords, double[])}).
+ *
+ * Points are stored as {x0, y0, (z0,) w0, x1, y1, ...} with the dimension of
+ * the line origin. Queries using a projection direction
+ * ({@link #setDirection(Coords)}) need homogeneous 3D coords (x, y, z, w).
+ *
+ * As for {@link Coords#projectLine(Coords, Coords, Coords, double[])}, the
+ * line origin and the points are assumed to be normalized (w = 1), and the
+ * line direction to have w = 0. Lines set with 3 coords (x, y, z) are used
+ * as (x, y, z, 1) and (vx, vy, vz, 0) when projecting a
+ * {@link CoordsBuffer}.
+ */
+public class LineProjector {
+
+	private int dimension;
+	private double[] origin = new double[4];
+	/** normalized direction */
+	private double[] n = new double[4];
+	private double normInv;
+
+	private Coords lastOrigin, lastDirection;
+	private int lastOriginStamp, lastDirectionStamp;
+
+	/** direction used for projectNear / nearestParameters */
+	private double px, py, pz, pw;
+	/** normal of the plane (line, v x direction) */
+	private double mx, my, mz, mDotDirection;
+	/** v x (v x direction), and its dot product with v */
+	private double nx, ny, nz, nDotV;
+	private boolean parallel = true;
+	private boolean parallelForParameters = true;
+	/** direction parallel to plane (line, v x direction) */
+	private boolean mDotDirectionZero;
+	/** line parallel to plane (point, direction, v x direction) */
+	private boolean nDotVZero;
+
+	/**
+	 * set the line
+	 *
+	 * @param o
+	 *            origin of the line
+	 * @param v
+	 *            direction of the line
+	 * @return this
+	 */
+	public LineProjector set(Coords o, Coords v) {
+		dimension = o.getLength();
+		if (origin.length < dimension) {
+			origin = new double[dimension];
+			n = new double[dimension];
+		}
+		normInv = 1 / v.calcNorm();
+		int len = Math.min(dimension, v.getLength());
+		for (int i = 0; i < dimension; i++) {
+			origin[i] = o.val[i];
+			n[i] = i < len ? v.val[i] * normInv : 0;
+		}
+		// missing coords: origin (.., 1), direction (.., 0)
+		for (int i = dimension; i < origin.length; i++) {
+			origin[i] = i == 3 ? 1 : 0;
+			n[i] = 0;
+		}
+		lastOrigin = o;
+		lastDirection = v;
+		lastOriginStamp = o.getModificationStamp();
+		lastDirectionStamp = v.getModificationStamp();
+		return this;
+	}
+
+	/**
+	 * set the line, only if o or v are not the last ones set, or have changed
+	 * since
+	 *
+	 * @param o
+	 *            origin of the line
+	 * @param v
+	 *            direction of the line
+	 * @return this
+	 */
+	public LineProjector update(Coords o, Coords v) {
+		if (o != lastOrigin || v != lastDirection
+				|| o.getModificationStamp() != lastOriginStamp
+				|| v.getModificationStamp() != lastDirectionStamp) {
+			set(o, v);
+		}
+		return this;
+	}
+
+	/**
+	 * set the projection direction used by
+	 * {@link #projectNear(double[], int, double[])} and
+	 * {@link #nearestParameters(double[], int, double[])}. Line and direction
+	 * must be 3D.
+	 *
+	 * @param direction
+	 *            direction of projection
+	 * @return this
+	 */
+	public LineProjector setDirection(Coords direction) {
+		px = direction.getX();
+		py = direction.getY();
+		pz = direction.getZ();
+		pw = direction.getW();
+		double vx = n[0], vy = n[1], vz = n[2];
+		// v3 = v x direction (v not normalized)
+		double ux = (vy * pz - vz * py) / normInv;
+		double uy = (vz * px - vx * pz) / normInv;
+		double uz = (vx * py - vy * px) / normInv;
+		parallel = DoubleUtil.isEqual(Math.sqrt(ux * ux + uy * uy + uz * uz),
+				0.0, Kernel.STANDARD_PRECISION);
+		parallelForParameters = DoubleUtil.isZero(ux) && DoubleUtil.isZero(uy)
+				&& DoubleUtil.isZero(uz);
+		// plane (o, v, v3) normal
+		mx = (vy * uz - vz * uy) / normInv;
+		my = (vz * ux - vx * uz) / normInv;
+		mz = (vx * uy - vy * ux) / normInv;
+		mDotDirection = mx * px + my * py + mz * pz;
+		// m and n have the same scale as in Coords (v not normalized)
+		mDotDirectionZero = DoubleUtil.isZero(mDotDirection);
+		// plane (point, direction, v3) normal
+		nx = py * uz - pz * uy;
+		ny = pz * ux - px * uz;
+		nz = px * uy - py * ux;
+		nDotV = (nx * vx + ny * vy + nz * vz) / normInv;
+		nDotVZero = DoubleUtil.isZero(nDotV);
+		return this;
+	}
+
+	/**
+	 * project point p
+	 *
+	 * @param p
+	 *            point
+	 * @param h
+	 *            output: point projected
+	 * @param parameters
+	 *            output: {parameter on the line, normalized parameter}; may
+	 *            be null
+	 */
+	public void project(Coords p, Coords h, double[] parameters) {
+		int len = Math.min(dimension, p.getLength());
+		double parameter = 0;
+		for (int i = 0; i < len; i++) {
+			parameter += (p.val[i] - origin[i]) * n[i];
+		}
+		h.markModified();
+		for (int i = 0; i < len; i++) {
+			h.val[i] = origin[i] + n[i] * parameter;
+		}
+		h.setNormsToRecompute();
+		if (parameters != null) {
+			parameters[0] = parameter * normInv;
+			parameters[1] = parameter;
+		}
+	}
+
+	/**
+	 * project n points
+	 *
+	 * @param points
+	 *            points (with line dimension)
+	 * @param count
+	 *            number of points
+	 * @param projected
+	 *            output: points projected (same layout as points, may be
+	 *            points); may be null
+	 * @param parameters
+	 *            output: parameters on the line; may be null
+	 * @param normalizedParameters
+	 *            output: normalized parameters on the line; may be null
+	 */
+	public void project(double[] points, int count, double[] projected,
+			double[] parameters, double[] normalizedParameters) {
+		int dim = dimension;
+		for (int i = 0, k = 0; i < count; i++, k += dim) {
+			double parameter = 0;
+			for (int j = 0; j < dim; j++) {
+				parameter += (points[k + j] - origin[j]) * n[j];
+			}
+			if (projected != null) {
+				for (int j = 0; j < dim; j++) {
+					projected[k + j] = origin[j] + n[j] * parameter;
+				}
+			}
+			if (parameters != null) {
+				parameters[i] = parameter * normInv;
+			}
+			if (normalizedParameters != null) {
+				normalizedParameters[i] = parameter;
+			}
+		}
+	}
+
+	/**
+	 * project all points of the buffer (line must be 3D)
+	 *
+	 * @param points
+	 *            points
+	 * @param projected
+	 *            output: points projected (may be points); may be null
+	 * @param parameters
+	 *            output: parameters on the line; may be null
+	 */
+	public void project(CoordsBuffer points, CoordsBuffer projected,
+			double[] parameters) {
+		int count = points.size();
+		if (projected != null) {
+			projected.setSize(count);
+		}
+		double ox = origin[0], oy = origin[1], oz = origin[2], ow = origin[3];
+		double vx = n[0], vy = n[1], vz = n[2], vw = n[3];
+		for (int i = 0; i < count; i++) {
+			double parameter = (points.x[i] - ox) * vx
+					+ (points.y[i] - oy) * vy + (points.z[i] - oz) * vz
+					+ (points.w[i] - ow) * vw;
+			if (projected != null) {
+				projected.set(i, ox + vx * parameter, oy + vy * parameter,
+						oz + vz * parameter, ow + vw * parameter);
+			}
+			if (parameters != null) {
+				parameters[i] = parameter * normInv;
+			}
+		}
+	}
+
+	/**
+	 * project n points as close as possible to the line regarding the
+	 * direction set (see
+	 * {@link Coords#projectNearLine(Coords, Coords, Coords, Coords)}: points
+	 * are unchanged if the line and the direction are parallel, and set to
+	 * the direction if the direction is parallel to the plane (line, v x
+	 * direction)).
+	 *
+	 * @param points
+	 *            points {x0, y0, z0, w0, x1, ...}
+	 * @param count
+	 *            number of points
+	 * @param projected
+	 *            output: points projected (same layout as points, may be
+	 *            points)
+	 */
+	public void projectNear(double[] points, int count, double[] projected) {
+		double ox = origin[0], oy = origin[1], oz = origin[2];
+		for (int k = 0, len = 4 * count; k < len; k += 4) {
+			double x = points[k], y = points[k + 1], z = points[k + 2],
+					w = points[k + 3];
+			if (parallel) {
+				projected[k] = x;
+				projected[k + 1] = y;
+				projected[k + 2] = z;
+				projected[k + 3] = w;
+			} else if (mDotDirectionZero) {
+				projected[k] = px;
+				projected[k + 1] = py;
+				projected[k + 2] = pz;
+				projected[k + 3] = pw;
+			} else {
+				double c = ((x - w * ox) * mx + (y - w * oy) * my
+						+ (z - w * oz) * mz) / mDotDirection;
+				projected[k] = x - c * px;
+				projected[k + 1] = y - c * py;
+				projected[k + 2] = z - c * pz;
+				projected[k + 3] = w - c * pw;
+			}
+		}
+	}
+
+	/**
+	 * for each point p, parameter on the line of the point of the line that
+	 * is the nearest to line (p, direction set) (see
+	 * {@link Coords#projectedParameterOnLineWithDirection(Coords, Coords, Coords, Coords)}).
+	 * Parameters are 0 if the line and the direction are parallel, and 1 if
+	 * the line is parallel to the plane (p, direction, v x direction).
+	 *
+	 * @param points
+	 *            points {x0, y0, z0, w0, x1, ...}
+	 * @param count
+	 *            number of points
+	 * @param parameters
+	 *            output: parameters
+	 */
+	public void nearestParameters(double[] points, int count,
+			double[] parameters) {
+		double ox = origin[0], oy = origin[1], oz = origin[2];
+		for (int i = 0, k = 0; i < count; i++, k += 4) {
+			if (parallelForParameters) {
+				parameters[i] = 0;
+			} else if (nDotVZero) {
+				parameters[i] = 1;
+			} else {
+				double w = points[k + 3];
+				parameters[i] = ((points[k] / w - ox) * nx
+						+ (points[k + 1] / w - oy) * ny
+						+ (points[k + 2] / w - oz) * nz) / nDotV;
+			}
+		}
+	}
+}
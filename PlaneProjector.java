@@ -0,0 +1,256 @@
+package org.geogebra.common.kernel.matrix;
+
+import org.geogebra.common.kernel.Kernel;
+import org.geogebra.common.util.DoubleUtil;
+
+/**
+ * Projects many points on the same plane, along the same direction. The
+ * frame {vx vy vz o} (where (o,vx,vy) is a coord sys for the plane, and vz
+ * the direction used for projection) is inverted once, then each point only
+ * costs one matrix-vector product (instead of solving a linear system, see
+ * {@link Coords#projectPlane(Coords, Coords, Coords, Coords, Coords, Coords)}).
+ *
+ * Points are homogeneous 3D coords (x, y, z, w).
+ */
+public class PlaneProjector {
+
+	private final CoordMatrix4x4 frame = new CoordMatrix4x4();
+
+	/** inverse of frame */
+	private double i11, i12, i13, i14, i21, i22, i23, i24, i31, i32, i33, i34,
+			i41, i42, i43, i44;
+	/** projection direction */
+	private double dx, dy, dz, dw;
+	private boolean parallel;
+
+	private CoordMatrix lastMatrix;
+	private int lastStamp;
+
+	/**
+	 * set the plane and projection direction
+	 *
+	 * @param vx
+	 *            plane first vector
+	 * @param vy
+	 *            plane second vector
+	 * @param vz
+	 *            direction used for projection
+	 * @param o
+	 *            plane origin
+	 * @return this
+	 */
+	public PlaneProjector set(Coords vx, Coords vy, Coords vz, Coords o) {
+		lastMatrix = null;
+		frame.setVx(vx);
+		frame.setVy(vy);
+		frame.setVz(vz);
+		frame.setOrigin(o);
+		factor();
+		return this;
+	}
+
+	/**
+	 * set the plane and projection direction
+	 *
+	 * @param m
+	 *            matrix {vx vy vz o} where (o,vx,vy) is a coord sys for the
+	 *            plane, and vz the direction used for projection
+	 * @return this
+	 */
+	public PlaneProjector set(CoordMatrix m) {
+		set(m.getVx(), m.getVy(), m.getVz(), m.getOrigin());
+		lastMatrix = m;
+		lastStamp = m.getModificationStamp();
+		return this;
+	}
+
+	/**
+	 * set the plane and projection direction, only if m is not the last
+	 * matrix set, or has changed since
+	 *
+	 * @param m
+	 *            matrix {vx vy vz o} where (o,vx,vy) is a coord sys for the
+	 *            plane, and vz the direction used for projection
+	 * @return this
+	 */
+	public PlaneProjector update(CoordMatrix m) {
+		if (m != lastMatrix || m.getModificationStamp() != lastStamp) {
+			set(m);
+		}
+		return this;
+	}
+
+	/**
+	 * set the plane, with v used for projection direction
+	 *
+	 * @param m
+	 *            matrix {vx vy ?? o} where (o,vx,vy) is a coord sys for the
+	 *            plane
+	 * @param v
+	 *            direction used for projection
+	 * @return this
+	 */
+	public PlaneProjector setThruV(CoordMatrix m, Coords v) {
+		return set(m.getVx(), m.getVy(), v, m.getOrigin());
+	}
+
+	private void factor() {
+		Coords vz = frame.getVz();
+		dx = vz.getX();
+		dy = vz.getY();
+		dz = vz.getZ();
+		dw = vz.getW();
+
+		parallel = DoubleUtil.isEqual(
+				vz.dotCrossProduct(frame.getVx(), frame.getVy()), 0,
+				Kernel.STANDARD_PRECISION);
+		if (parallel) {
+			// direction of projection is parallel to the plane : points are
+			// infinite
+			return;
+		}
+
+		CoordMatrix inv = frame.inverse();
+		i11 = inv.get(1, 1);
+		i12 = inv.get(1, 2);
+		i13 = inv.get(1, 3);
+		i14 = inv.get(1, 4);
+		i21 = inv.get(2, 1);
+		i22 = inv.get(2, 2);
+		i23 = inv.get(2, 3);
+		i24 = inv.get(2, 4);
+		i31 = inv.get(3, 1);
+		i32 = inv.get(3, 2);
+		i33 = inv.get(3, 3);
+		i34 = inv.get(3, 4);
+		i41 = inv.get(4, 1);
+		i42 = inv.get(4, 2);
+		i43 = inv.get(4, 3);
+		i44 = inv.get(4, 4);
+	}
+
+	/**
+	 * @return true if projection direction is parallel to the plane (then
+	 *         all projected points are infinite)
+	 */
+	public boolean isParallel() {
+		return parallel;
+	}
+
+	/**
+	 * project point p
+	 *
+	 * @param p
+	 *            point (length 4)
+	 * @param globalCoords
+	 *            output: projected point (length 4)
+	 * @param inPlaneCoords
+	 *            output: projected point in plane coords (z = parameter
+	 *            along projection direction); may be null
+	 */
+	public void project(Coords p, Coords globalCoords, Coords inPlaneCoords) {
+		double x = p.getX(), y = p.getY(), z = p.getZ(), w = p.getW();
+		if (parallel) {
+			if (inPlaneCoords != null) {
+				inPlaneCoords.set(0, 0, -1, 0);
+			}
+			globalCoords.set(dx, dy, dz, dw);
+			return;
+		}
+		double c = i31 * x + i32 * y + i33 * z + i34 * w;
+		if (inPlaneCoords != null) {
+			inPlaneCoords.set(i11 * x + i12 * y + i13 * z + i14 * w,
+					i21 * x + i22 * y + i23 * z + i24 * w, c,
+					i41 * x + i42 * y + i43 * z + i44 * w);
+		}
+		globalCoords.set(x - c * dx, y - c * dy, z - c * dz, w - c * dw);
+	}
+
+	/**
+	 * project n points stored as {x0, y0, z0, w0, x1, y1, ...}
+	 *
+	 * @param points
+	 *            points
+	 * @param n
+	 *            number of points
+	 * @param globalCoords
+	 *            output: projected points (same layout as points, may be
+	 *            points)
+	 * @param inPlaneCoords
+	 *            output: projected points in plane coords (same layout as
+	 *            points, may be points); may be null
+	 */
+	public void project(double[] points, int n, double[] globalCoords,
+			double[] inPlaneCoords) {
+		int len = 4 * n;
+		if (parallel) {
+			for (int k = 0; k < len; k += 4) {
+				if (inPlaneCoords != null) {
+					inPlaneCoords[k] = 0;
+					inPlaneCoords[k + 1] = 0;
+					inPlaneCoords[k + 2] = -1;
+					inPlaneCoords[k + 3] = 0;
+				}
+				globalCoords[k] = dx;
+				globalCoords[k + 1] = dy;
+				globalCoords[k + 2] = dz;
+				globalCoords[k + 3] = dw;
+			}
+			return;
+		}
+		for (int k = 0; k < len; k += 4) {
+			double x = points[k], y = points[k + 1], z = points[k + 2],
+					w = points[k + 3];
+			double c = i31 * x + i32 * y + i33 * z + i34 * w;
+			if (inPlaneCoords != null) {
+				inPlaneCoords[k] = i11 * x + i12 * y + i13 * z + i14 * w;
+				inPlaneCoords[k + 1] = i21 * x + i22 * y + i23 * z + i24 * w;
+				inPlaneCoords[k + 2] = c;
+				inPlaneCoords[k + 3] = i41 * x + i42 * y + i43 * z + i44 * w;
+			}
+			globalCoords[k] = x - c * dx;
+			globalCoords[k + 1] = y - c * dy;
+			globalCoords[k + 2] = z - c * dz;
+			globalCoords[k + 3] = w - c * dw;
+		}
+	}
+
+	/**
+	 * project all points of the buffer
+	 *
+	 * @param points
+	 *            points
+	 * @param globalCoords
+	 *            output: projected points (may be points)
+	 * @param inPlaneCoords
+	 *            output: projected points in plane coords (may be points);
+	 *            may be null
+	 */
+	public void project(CoordsBuffer points, CoordsBuffer globalCoords,
+			CoordsBuffer inPlaneCoords) {
+		int n = points.size();
+		globalCoords.setSize(n);
+		if (inPlaneCoords != null) {
+			inPlaneCoords.setSize(n);
+		}
+		for (int i = 0; i < n; i++) {
+			double x = points.x[i], y = points.y[i], z = points.z[i],
+					w = points.w[i];
+			if (parallel) {
+				if (inPlaneCoords != null) {
+					inPlaneCoords.set(i, 0, 0, -1, 0);
+				}
+				globalCoords.set(i, dx, dy, dz, dw);
+			} else {
+				double c = i31 * x + i32 * y + i33 * z + i34 * w;
+				if (inPlaneCoords != null) {
+					inPlaneCoords.set(i, i11 * x + i12 * y + i13 * z + i14 * w,
+							i21 * x + i22 * y + i23 * z + i24 * w, c,
+							i41 * x + i42 * y + i43 * z + i44 * w);
+				}
+				globalCoords.set(i, x - c * dx, y - c * dy, z - c * dz,
+						w - c * dw);
+			}
+		}
+	}
+}
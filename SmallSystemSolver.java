@@ -0,0 +1,152 @@
+package org.geogebra.common.kernel.matrix;
+
+/**
+ * Closed-form (Cramer) solver for 3x3 and 4x4 linear systems, used as fast
+ * path before the generic Gauss pivot of {@link CoordMatrix}.
+ *
+ * Only well-conditioned systems are solved here: when the determinant is
+ * (relatively) near zero, or not finite, nothing is done and the caller uses
+ * the Gauss pivot, so that degenerate cases keep the same results.
+ */
+final class SmallSystemSolver {
+
+	/**
+	 * minimal |det| / (product of column norms) to use closed form
+	 */
+	private static final double MIN_RELATIVE_DET = 1E-8;
+
+	private SmallSystemSolver() {
+		// utility class
+	}
+
+	/**
+	 * Solve columns * sol = res if the system is 3x3 or 4x4 and well
+	 * conditioned. sol may be res or one of the columns values.
+	 *
+	 * @param columns
+	 *            matrix columns (at least size, each of length size)
+	 * @param res
+	 *            result values
+	 * @param sol
+	 *            output: solution values
+	 * @param size
+	 *            system size
+	 * @return false if nothing was done (use the Gauss pivot then)
+	 */
+	static boolean solve(Coords[] columns, double[] res, double[] sol,
+			int size) {
+		if (size == 4) {
+			return solve4(columns, res, sol);
+		}
+		if (size == 3) {
+			return solve3(columns, res, sol);
+		}
+		return false;
+	}
+
+	private static boolean solve3(Coords[] columns, double[] res,
+			double[] sol) {
+		if (columns.length < 3 || columns[0].getLength() != 3
+				|| columns[1].getLength() != 3
+				|| columns[2].getLength() != 3) {
+			return false;
+		}
+		double[] a = columns[0].val, b = columns[1].val, c = columns[2].val;
+		double a0 = a[0], a1 = a[1], a2 = a[2];
+		double b0 = b[0], b1 = b[1], b2 = b[2];
+		double c0 = c[0], c1 = c[1], c2 = c[2];
+		double r0 = res[0], r1 = res[1], r2 = res[2];
+
+		// cofactors of first column: b x c
+		double bc0 = b1 * c2 - b2 * c1;
+		double bc1 = b2 * c0 - b0 * c2;
+		double bc2 = b0 * c1 - b1 * c0;
+		double det = a0 * bc0 + a1 * bc1 + a2 * bc2;
+		if (!isWellConditioned(det,
+				(a0 * a0 + a1 * a1 + a2 * a2) * (b0 * b0 + b1 * b1 + b2 * b2)
+						* (c0 * c0 + c1 * c1 + c2 * c2))) {
+			return false;
+		}
+
+		double detInv = 1 / det;
+		// det(r, b, c), det(a, r, c), det(a, b, r)
+		double s0 = r0 * bc0 + r1 * bc1 + r2 * bc2;
+		double s1 = a0 * (r1 * c2 - r2 * c1) + a1 * (r2 * c0 - r0 * c2)
+				+ a2 * (r0 * c1 - r1 * c0);
+		double s2 = a0 * (b1 * r2 - b2 * r1) + a1 * (b2 * r0 - b0 * r2)
+				+ a2 * (b0 * r1 - b1 * r0);
+		sol[0] = s0 * detInv;
+		sol[1] = s1 * detInv;
+		sol[2] = s2 * detInv;
+		return true;
+	}
+
+	private static boolean solve4(Coords[] columns, double[] res,
+			double[] sol) {
+		if (columns.length < 4 || columns[0].getLength() != 4
+				|| columns[1].getLength() != 4
+				|| columns[2].getLength() != 4
+				|| columns[3].getLength() != 4) {
+			return false;
+		}
+		double[] a = columns[0].val, b = columns[1].val, c = columns[2].val,
+				d = columns[3].val;
+		double a0 = a[0], a1 = a[1], a2 = a[2], a3 = a[3];
+		double b0 = b[0], b1 = b[1], b2 = b[2], b3 = b[3];
+		double c0 = c[0], c1 = c[1], c2 = c[2], c3 = c[3];
+		double d0 = d[0], d1 = d[1], d2 = d[2], d3 = d[3];
+		double r0 = res[0], r1 = res[1], r2 = res[2], r3 = res[3];
+
+		double det = det4(a0, a1, a2, a3, b0, b1, b2, b3, c0, c1, c2, c3, d0,
+				d1, d2, d3);
+		if (!isWellConditioned(det,
+				(a0 * a0 + a1 * a1 + a2 * a2 + a3 * a3)
+						* (b0 * b0 + b1 * b1 + b2 * b2 + b3 * b3)
+						* (c0 * c0 + c1 * c1 + c2 * c2 + c3 * c3)
+						* (d0 * d0 + d1 * d1 + d2 * d2 + d3 * d3))) {
+			return false;
+		}
+
+		double detInv = 1 / det;
+		sol[0] = det4(r0, r1, r2, r3, b0, b1, b2, b3, c0, c1, c2, c3, d0, d1,
+				d2, d3) * detInv;
+		sol[1] = det4(a0, a1, a2, a3, r0, r1, r2, r3, c0, c1, c2, c3, d0, d1,
+				d2, d3) * detInv;
+		sol[2] = det4(a0, a1, a2, a3, b0, b1, b2, b3, r0, r1, r2, r3, d0, d1,
+				d2, d3) * detInv;
+		sol[3] = det4(a0, a1, a2, a3, b0, b1, b2, b3, c0, c1, c2, c3, r0, r1,
+				r2, r3) * detInv;
+		return true;
+	}
+
+	/**
+	 * @param det
+	 *            determinant
+	 * @param squareNormsProduct
+	 *            product of columns square norms (square of Hadamard bound)
+	 * @return true if det is finite and not near zero regarding the bound
+	 */
+	private static boolean isWellConditioned(double det,
+			double squareNormsProduct) {
+		double sqDet = det * det;
+		return sqDet >= MIN_RELATIVE_DET * MIN_RELATIVE_DET
+				* squareNormsProduct && sqDet > 0
+				&& !Double.isInfinite(sqDet);
+	}
+
+	/**
+	 * determinant of 4x4 matrix with columns a, b, c, d (Laplace expansion
+	 * along rows 0-1 / rows 2-3)
+	 */
+	private static double det4(double a0, double a1, double a2, double a3,
+			double b0, double b1, double b2, double b3, double c0, double c1,
+			double c2, double c3, double d0, double d1, double d2,
+			double d3) {
+		return (a0 * b1 - a1 * b0) * (c2 * d3 - c3 * d2)
+				- (a0 * c1 - a1 * c0) * (b2 * d3 - b3 * d2)
+				+ (a0 * d1 - a1 * d0) * (b2 * c3 - b3 * c2)
+				+ (b0 * c1 - b1 * c0) * (a2 * d3 - a3 * d2)
+				- (b0 * d1 - b1 * d0) * (a2 * c3 - a3 * c2)
+				+ (c0 * d1 - c1 * d0) * (a2 * b3 - a3 * b2);
+	}
+}